@@ -0,0 +1,174 @@
+package com.andresjesse.jpctblend;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+
+import com.andresjesse.jpctblend.benchmark.SyntheticScene;
+import com.threed.jpct.Logger;
+import com.threed.jpct.World;
+
+/**
+ * Benchmarks of each stage of the scene loading pipeline (see README.txt).
+ * It lives in the JPCTBlend package to call the (package-private) section
+ * parsers of JPCTBlendScene directly.
+ *
+ * @author andres
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx4g", "-Djava.awt.headless=true" })
+public class SceneLoadBenchmark {
+
+	/** "sample" or a number of instances (see SyntheticScene). */
+	@Param({ "sample", "1000", "10000", "100000" })
+	public String scene;
+
+	private String sceneFilename;
+
+	// sections of the parsed document
+	private Node xmlTextures;
+	private Node xmlInstances;
+	private Node xmlLights;
+	private Node xmlActors;
+
+	// a loaded scene (not in the world): its parsers are reused, and it is
+	// added to the world by addSceneToWorld
+	private JPCTBlendScene loaded;
+	private World world;
+
+	// distinct mesh files, and their folder
+	private List<String> meshFiles;
+	private String meshPath;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		Logger.setLogLevel(Logger.LL_ONLY_ERRORS);
+
+		sceneFilename = SyntheticScene.resolve(scene);
+
+		Node root = JPCTBlendScene.readDocument(sceneFilename).getFirstChild();
+		xmlTextures = JPCTBlendScene.findSubNode("textures", root);
+		xmlInstances = JPCTBlendScene.findSubNode("instances", root);
+		xmlLights = JPCTBlendScene.findSubNode("lights", root);
+		xmlActors = JPCTBlendScene.findSubNode("actors", root);
+
+		world = new World();
+		loaded = JPCTBlendScene.loadAsync(sceneFilename, world,
+				new SceneLoadOptions()).get();
+
+		LinkedHashSet<String> files = new LinkedHashSet<String>();
+		for (InstanceInfo info : loaded.getInstanceInfos())
+			files.add(info.getMeshFile());
+		meshFiles = new ArrayList<String>(files);
+		meshPath = new File(sceneFilename).getParent() + File.separator
+				+ "meshs" + File.separator;
+	}
+
+	@Benchmark
+	public Document readDocument() {
+		return JPCTBlendScene.readDocument(sceneFilename);
+	}
+
+	@Benchmark
+	public List<String> parseTextures() {
+		return loaded.parseTextures(xmlTextures);
+	}
+
+	@Benchmark
+	public List<InstanceInfo> parseInstances() {
+		return loaded.parseInstances(xmlInstances);
+	}
+
+	/**
+	 * Loads every distinct mesh from disk. Meshs are loaded under their own
+	 * keys (the loaded scene holds the usual ones) and released at once, so
+	 * nothing is served from the Object3DManager cache.
+	 */
+	@Benchmark
+	public int loadMeshs() {
+		Object3DManager manager = Object3DManager.getInstance();
+		int triangles = 0;
+
+		for (String meshFile : meshFiles) {
+			String key = "benchmark:" + meshFile;
+			triangles += manager.acquireObject3D(key, meshPath + meshFile)
+					.getMesh().getTriangleCount();
+			manager.releaseObject3D(key);
+		}
+		return triangles;
+	}
+
+	@Benchmark
+	public List<LightInfo> parseLights() {
+		return loaded.parseLights(xmlLights);
+	}
+
+	@Benchmark
+	public List<ActorInfo> parseActors() {
+		return loaded.parseActors(xmlActors);
+	}
+
+	/**
+	 * Adds a loaded scene to the world (it is removed after each call, and
+	 * its textures unloaded, so from the second call on this includes
+	 * decoding its textures again: a cold add, not a warm re-add).
+	 */
+	@Benchmark
+	public int addSceneToWorld(WorldState state) {
+		state.scene.addSceneToWorld();
+		return state.world.getSize();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		ActorFactory.getInstance().getResources().release();
+	}
+
+	/**
+	 * The loaded scene, added to (and removed from) the world by each call.
+	 * Kept apart, so the per call tear down does not disturb the other
+	 * benchmarks.
+	 */
+	@State(Scope.Benchmark)
+	public static class WorldState {
+		World world;
+		JPCTBlendScene scene;
+
+		@Setup(Level.Trial)
+		public void setUp(SceneLoadBenchmark benchmark) {
+			world = benchmark.world;
+			scene = benchmark.loaded;
+		}
+
+		@TearDown(Level.Invocation)
+		public void removeScene() {
+			scene.removeSceneFromWorld();
+
+			// no FrameBuffer: just removed from the TextureManager
+			SceneTextureManager.getInstance().unloadTextures(null);
+		}
+	}
+}
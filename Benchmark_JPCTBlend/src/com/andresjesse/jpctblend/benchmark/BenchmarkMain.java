@@ -0,0 +1,46 @@
+package com.andresjesse.jpctblend.benchmark;
+
+import java.io.File;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.andresjesse.jpctblend.SceneLoadBenchmark;
+
+/**
+ * Runs the JPCTBlend benchmarks and writes the results as JSON, one file per
+ * JPCTBlend version (-Djpctblend.version, "dev" if not set) so versions can
+ * be compared. Run it from the Sample_JPCTBlend folder; JMH command line
+ * options are accepted (e.g. "-p scene=sample").
+ *
+ * @author andres
+ *
+ */
+public class BenchmarkMain {
+
+	public static void main(String[] args) throws Exception {
+		String version = System.getProperty("jpctblend.version", "dev");
+		File results = new File(System.getProperty("jpctblend.results",
+				"../Benchmark_JPCTBlend/results"));
+		results.mkdirs();
+
+		File resultFile = new File(results, "jmh-" + version + ".json");
+
+		CommandLineOptions commandLine = new CommandLineOptions(args);
+		ChainedOptionsBuilder options = new OptionsBuilder()
+				.parent(commandLine).resultFormat(ResultFormatType.JSON)
+				.result(resultFile.getPath());
+
+		// all benchmarks, unless some were chosen
+		if (commandLine.getIncludes().isEmpty())
+			options.include(SceneLoadBenchmark.class.getName());
+
+		new Runner(options.build()).run();
+
+		System.out.println("JPCTBlend: benchmark results written to "
+				+ resultFile);
+	}
+}
@@ -0,0 +1,60 @@
+package com.andresjesse.jpctblend.benchmark;
+
+import java.io.File;
+
+import com.andresjesse.jpctblend.SceneGenerator;
+
+/**
+ * Scenes used by the benchmarks: the bundled sample scene, or a synthetic
+ * scene written by {@link SceneGenerator} (always with the same seed, so
+ * every run and every version loads the same scene). Synthetic scenes are
+ * written once to the temp folder and reused by later runs.
+ *
+ * @author andres
+ *
+ */
+public class SyntheticScene {
+
+	/** Bundled sample scene (relative to Sample_JPCTBlend). */
+	public static final String SAMPLE_SCENE = "media/scenes/sample_scene/sample_scene.xml";
+
+	public static final long SEED = 1;
+	public static final float UNIQUE_MESH_RATIO = 0.01f;
+
+	// world units per instance (the extent grows with the scene)
+	private static final float AREA_PER_INSTANCE = 16;
+
+	/**
+	 * @param scene
+	 *            "sample", or a number of instances
+	 * @return the scene xml filename (generated if needed)
+	 */
+	public static String resolve(String scene) throws Exception {
+		if (scene.equals("sample"))
+			return SAMPLE_SCENE;
+
+		int instances = Integer.parseInt(scene);
+		File dir = new File(System.getProperty("java.io.tmpdir"),
+				"jpctblend-benchmark" + File.separator + "scene_" + instances
+						+ "_seed" + SEED);
+		File xml = new File(dir, "scene.xml");
+
+		if (!xml.exists()) {
+			SceneGenerator generator = new SceneGenerator();
+			generator.setInstances(instances);
+			generator.setUniqueMeshRatio(UNIQUE_MESH_RATIO);
+			generator.setExtent((float) Math.sqrt(instances
+					* AREA_PER_INSTANCE));
+			generator.setSeed(SEED);
+
+			// written aside, so a half written scene is never used
+			File partial = new File(dir.getPath() + ".part");
+			generator.generate(partial);
+			if (!partial.renameTo(dir))
+				throw new IllegalStateException("JPCTBlend error: can't move "
+						+ partial + " to " + dir);
+		}
+
+		return xml.getPath();
+	}
+}
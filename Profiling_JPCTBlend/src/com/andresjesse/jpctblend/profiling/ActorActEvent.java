@@ -0,0 +1,31 @@
+package com.andresjesse.jpctblend.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * An act() slower than the act time threshold (see
+ * SceneLoadOptions.setActTimeThreshold). The actor is timed by JPCTBlend,
+ * so the event is committed once act() returns: its time is in actTime, not
+ * in the event duration.
+ * 
+ * @author andres
+ * 
+ */
+@Name("com.andresjesse.jpctblend.ActorAct")
+@Label("Actor Act")
+@Category({ "JPCTBlend", "Update" })
+@Description("An actor act() slower than the JPCTBlend act time threshold")
+public class ActorActEvent extends Event {
+
+	@Label("Actor Class")
+	public Class<?> actorClass;
+
+	@Label("Act Time")
+	@Timespan(Timespan.NANOSECONDS)
+	public long actTime;
+}
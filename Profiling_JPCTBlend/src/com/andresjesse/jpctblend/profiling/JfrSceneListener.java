@@ -0,0 +1,138 @@
+package com.andresjesse.jpctblend.profiling;
+
+import java.util.HashMap;
+
+import com.andresjesse.jpctblend.IActor;
+import com.andresjesse.jpctblend.ISceneStatsListener;
+import com.andresjesse.jpctblend.ISceneUpdateListener;
+import com.andresjesse.jpctblend.LoadPhase;
+import com.andresjesse.jpctblend.SceneLoadOptions;
+
+/**
+ * Turns the JPCTBlend stats and update callbacks into Java Flight Recorder
+ * events: {@link LoadPhaseEvent}, {@link LoadAssetEvent},
+ * {@link SceneUpdateEvent} and {@link ActorActEvent}. Nothing is recorded
+ * unless a recording is running (e.g. -XX:StartFlightRecording), and then
+ * the cost is one small event per phase, asset and update (plus one per
+ * slow actor).
+ * 
+ * Usage: JfrSceneListener.install(options, 2) before loading the scene.
+ * 
+ * @author andres
+ * 
+ */
+public class JfrSceneListener implements ISceneStatsListener,
+		ISceneUpdateListener {
+
+	// started and finished calls come from the same thread, one phase at a
+	// time; a thread may have several assets open (the scene file is open
+	// for the whole parse)
+	private final ThreadLocal<LoadPhaseEvent> phases = new ThreadLocal<>();
+	private final ThreadLocal<HashMap<String, LoadAssetEvent>> assets = ThreadLocal
+			.withInitial(HashMap::new);
+
+	// updates run on the rendering thread
+	private SceneUpdateEvent update;
+
+	/**
+	 * Sets a new listener as stats and update listener of some load options.
+	 * 
+	 * @param options
+	 *            options used to load the scene
+	 * @param actTimeThreshold
+	 *            act() calls longer than this (ms) are recorded as
+	 *            {@link ActorActEvent}s (negative = actors are not timed)
+	 * @return the listener
+	 */
+	public static JfrSceneListener install(SceneLoadOptions options,
+			float actTimeThreshold) {
+		JfrSceneListener listener = new JfrSceneListener();
+		options.setStatsListener(listener);
+		options.setUpdateListener(listener);
+		options.setActTimeThreshold(actTimeThreshold);
+		return listener;
+	}
+
+	// =================================================================Loading
+
+	@Override
+	public void onPhaseStarted(LoadPhase phase) {
+		LoadPhaseEvent event = new LoadPhaseEvent();
+		event.begin();
+		phases.set(event);
+	}
+
+	@Override
+	public void onPhaseFinished(LoadPhase phase, long wallTime, long cpuTime) {
+		LoadPhaseEvent event = phases.get();
+		phases.remove();
+
+		if (event == null)
+			return;
+
+		event.end();
+		if (event.shouldCommit()) {
+			event.phase = phase.name();
+			event.commit();
+		}
+	}
+
+	@Override
+	public void onAssetStarted(LoadPhase phase, String name) {
+		LoadAssetEvent event = new LoadAssetEvent();
+		event.begin();
+		assets.get().put(name, event);
+	}
+
+	@Override
+	public void onAssetFinished(LoadPhase phase, String name, long bytes,
+			long wallTime, long cpuTime, boolean cached) {
+		LoadAssetEvent event = assets.get().remove(name);
+
+		if (event == null)
+			return;
+
+		event.end();
+		if (event.shouldCommit()) {
+			event.phase = phase.name();
+			event.file = name;
+			event.bytes = bytes;
+			event.cached = cached;
+			event.commit();
+		}
+	}
+
+	// ==================================================================Update
+
+	@Override
+	public void onUpdateStarted() {
+		update = new SceneUpdateEvent();
+		update.begin();
+	}
+
+	@Override
+	public void onActorActed(IActor actor, long actTime) {
+		ActorActEvent event = new ActorActEvent();
+
+		if (event.isEnabled()) {
+			event.actorClass = actor.getClass();
+			event.actTime = actTime;
+			event.commit();
+		}
+	}
+
+	@Override
+	public void onUpdateFinished(long updateTime, int actedActors) {
+		SceneUpdateEvent event = update;
+		update = null;
+
+		if (event == null)
+			return;
+
+		event.end();
+		if (event.shouldCommit()) {
+			event.actedActors = actedActors;
+			event.commit();
+		}
+	}
+}
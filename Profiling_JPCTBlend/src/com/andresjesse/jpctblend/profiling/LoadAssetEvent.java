@@ -0,0 +1,36 @@
+package com.andresjesse.jpctblend.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * One asset read while loading a scene: the scene file, a texture or a mesh.
+ * Assets found already loaded are recorded too (cached, nothing read).
+ * 
+ * @author andres
+ * 
+ */
+@Name("com.andresjesse.jpctblend.LoadAsset")
+@Label("Scene Load Asset")
+@Category({ "JPCTBlend", "Loading" })
+@Description("A file read while loading a JPCTBlend scene")
+public class LoadAssetEvent extends Event {
+
+	@Label("Phase")
+	public String phase;
+
+	@Label("File")
+	public String file;
+
+	@Label("Size")
+	@DataAmount
+	public long bytes;
+
+	@Label("Cached")
+	@Description("Already loaded, nothing was read")
+	public boolean cached;
+}
@@ -0,0 +1,24 @@
+package com.andresjesse.jpctblend.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * One phase of a scene load (see com.andresjesse.jpctblend.LoadPhase). With
+ * a frame budget, ADD_TO_WORLD gets one event per frame.
+ * 
+ * @author andres
+ * 
+ */
+@Name("com.andresjesse.jpctblend.LoadPhase")
+@Label("Scene Load Phase")
+@Category({ "JPCTBlend", "Loading" })
+@Description("A phase of a JPCTBlend scene load")
+public class LoadPhaseEvent extends Event {
+
+	@Label("Phase")
+	public String phase;
+}
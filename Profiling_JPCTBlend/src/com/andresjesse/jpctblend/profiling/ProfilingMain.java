@@ -0,0 +1,123 @@
+package com.andresjesse.jpctblend.profiling;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.util.List;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import com.andresjesse.jpctblend.JPCTBlendScene;
+import com.andresjesse.jpctblend.SceneLoadOptions;
+import com.threed.jpct.Logger;
+import com.threed.jpct.World;
+
+/**
+ * Loads a scene and updates it for some frames (at 60 updates per second of
+ * simulation time, as fast as possible, nothing is rendered) while a flight
+ * recording runs, then writes the recording and prints the slowest phases,
+ * assets, updates and actor classes found in it. Open the recording in JDK
+ * Mission Control for the whole picture. Run it from the Sample_JPCTBlend
+ * folder (actors load their files from "media/").
+ * 
+ * Usage: ProfilingMain scene.xml [updates=600] [recording.jfr]
+ * (-Djpctblend.actThreshold=ms, 0.1 by default)
+ * 
+ * @author andres
+ * 
+ */
+public class ProfilingMain {
+
+	public static void main(String[] args) throws IOException, ParseException {
+		if (args.length < 1) {
+			System.err.println("Usage: ProfilingMain scene.xml [updates=600]"
+					+ " [recording.jfr]");
+			System.exit(1);
+		}
+
+		int updates = args.length > 1 ? Integer.parseInt(args[1]) : 600;
+		File output = new File(args.length > 2 ? args[2]
+				: "../Profiling_JPCTBlend/recordings/profile.jfr");
+		float threshold = Float.parseFloat(System.getProperty(
+				"jpctblend.actThreshold", "0.1"));
+
+		Logger.setLogLevel(Logger.LL_ONLY_ERRORS);
+
+		SceneLoadOptions options = new SceneLoadOptions();
+		JfrSceneListener.install(options, threshold);
+
+		Recording recording = new Recording(
+				Configuration.getConfiguration("profile"));
+		recording.start();
+
+		JPCTBlendScene scene = new JPCTBlendScene(args[0], new World(),
+				options);
+		for (int i = 0; i < updates; i++)
+			scene.update(1 / 60f);
+
+		recording.stop();
+		if (output.getParentFile() != null)
+			output.getParentFile().mkdirs();
+		recording.dump(output.toPath());
+		recording.close();
+
+		System.out.println("JPCTBlend: recording written to " + output);
+		printSummary(output.toPath());
+
+		// actors may have started non daemon threads
+		System.exit(0);
+	}
+
+	/**
+	 * Prints the slowest JPCTBlend events of a recording.
+	 */
+	private static void printSummary(Path recording) throws IOException {
+		List<RecordedEvent> events = RecordingFile.readAllEvents(recording);
+
+		RecordedEvent slowestUpdate = null;
+		RecordedEvent slowestAsset = null;
+		RecordedEvent slowestAct = null;
+
+		for (RecordedEvent event : events) {
+			String name = event.getEventType().getName();
+
+			if (name.equals("com.andresjesse.jpctblend.LoadPhase")) {
+				System.out.println("  phase " + event.getString("phase") + ": "
+						+ event.getDuration().toMillis() + " ms");
+			} else if (name.equals("com.andresjesse.jpctblend.LoadAsset")) {
+				if (slowestAsset == null
+						|| event.getDuration().compareTo(
+								slowestAsset.getDuration()) > 0)
+					slowestAsset = event;
+			} else if (name.equals("com.andresjesse.jpctblend.SceneUpdate")) {
+				if (slowestUpdate == null
+						|| event.getDuration().compareTo(
+								slowestUpdate.getDuration()) > 0)
+					slowestUpdate = event;
+			} else if (name.equals("com.andresjesse.jpctblend.ActorAct")) {
+				if (slowestAct == null
+						|| event.getLong("actTime") > slowestAct
+								.getLong("actTime"))
+					slowestAct = event;
+			}
+		}
+
+		if (slowestAsset != null)
+			System.out.println("  slowest asset: "
+					+ slowestAsset.getString("file") + " ("
+					+ slowestAsset.getLong("bytes") + " bytes, "
+					+ slowestAsset.getDuration().toMillis() + " ms)");
+		if (slowestUpdate != null)
+			System.out.println("  slowest update: "
+					+ slowestUpdate.getDuration().toNanos() / 1000 + " us ("
+					+ slowestUpdate.getInt("actedActors") + " actors)");
+		if (slowestAct != null)
+			System.out.println("  slowest act: "
+					+ slowestAct.getClass("actorClass").getName() + " ("
+					+ slowestAct.getLong("actTime") / 1000 + " us)");
+	}
+}
@@ -0,0 +1,24 @@
+package com.andresjesse.jpctblend.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * One call to JPCTBlendScene.update(), frame() or simulate() (a GameLoop
+ * makes one frame() per frame and one simulate() per step).
+ * 
+ * @author andres
+ * 
+ */
+@Name("com.andresjesse.jpctblend.SceneUpdate")
+@Label("Scene Update")
+@Category({ "JPCTBlend", "Update" })
+@Description("A JPCTBlend scene update: transition, cell streaming and actors")
+public class SceneUpdateEvent extends Event {
+
+	@Label("Acted Actors")
+	public int actedActors;
+}
@@ -0,0 +1,41 @@
+package com.andresjesse.jpctblend;
+
+/**
+ * Actor Builder, creates the actors of one java class without reflection.
+ * Builders are registered in the {@link ActorFactory}, usually by an
+ * {@link IActorProvider}:
+ * 
+ * <pre>
+ * factory.register(&quot;SampleActor&quot;, new ActorBuilder() {
+ * 	public void prefetch(ActorResources resources) {
+ * 		resources.prefetchMesh(SampleActor.MESH);
+ * 	}
+ * 
+ * 	public IActor create(ActorResources resources) {
+ * 		return new SampleActor(resources);
+ * 	}
+ * });
+ * </pre>
+ * 
+ * @author andres
+ * 
+ */
+public abstract class ActorBuilder {
+	/**
+	 * Starts loading (see {@link ActorResources#prefetchMesh(String)}) the
+	 * files used by the actors, called once per scene before any actor is
+	 * created. Does nothing by default.
+	 * 
+	 * @param resources
+	 *            shared actor resources
+	 */
+	public void prefetch(ActorResources resources) {
+	}
+
+	/**
+	 * @param resources
+	 *            shared actor resources (take meshs and textures from here)
+	 * @return a new actor
+	 */
+	public abstract IActor create(ActorResources resources);
+}
@@ -0,0 +1,144 @@
+package com.andresjesse.jpctblend;
+
+import java.util.Arrays;
+
+import com.threed.jpct.Object3D;
+import com.threed.jpct.SimpleVector;
+import com.threed.jpct.World;
+
+/**
+ * Actor Command Buffer, records the changes a parallel actor wants to do to
+ * the world (see {@link IParallelActor}). Commands are applied by the
+ * rendering thread, in the order they were recorded. Commands are stored in
+ * flat arrays reused from frame to frame, so recording does not allocate
+ * (except for {@link #run(Runnable)}).
+ * 
+ * @author andres
+ * 
+ */
+public class ActorCommandBuffer {
+	private static final int TRANSLATE = 0;
+	private static final int ROTATE_X = 1;
+	private static final int ROTATE_Y = 2;
+	private static final int ROTATE_Z = 3;
+	private static final int SET_VISIBILITY = 4;
+	private static final int ADD_OBJECT = 5;
+	private static final int REMOVE_OBJECT = 6;
+	private static final int RUN = 7;
+
+	private int size = 0;
+	private int[] codes = new int[8];
+	// object (or runnable) of each command
+	private Object[] targets = new Object[8];
+	// 3 values per command
+	private float[] values = new float[24];
+
+	public void translate(Object3D obj, float x, float y, float z) {
+		add(TRANSLATE, obj, x, y, z);
+	}
+
+	public void translate(Object3D obj, SimpleVector trans) {
+		add(TRANSLATE, obj, trans.x, trans.y, trans.z);
+	}
+
+	public void rotateX(Object3D obj, float angle) {
+		add(ROTATE_X, obj, angle, 0, 0);
+	}
+
+	public void rotateY(Object3D obj, float angle) {
+		add(ROTATE_Y, obj, angle, 0, 0);
+	}
+
+	public void rotateZ(Object3D obj, float angle) {
+		add(ROTATE_Z, obj, angle, 0, 0);
+	}
+
+	public void setVisibility(Object3D obj, boolean visible) {
+		add(SET_VISIBILITY, obj, visible ? 1 : 0, 0, 0);
+	}
+
+	public void addObject(Object3D obj) {
+		add(ADD_OBJECT, obj, 0, 0, 0);
+	}
+
+	public void removeObject(Object3D obj) {
+		add(REMOVE_OBJECT, obj, 0, 0, 0);
+	}
+
+	/**
+	 * Records any other change, it is run by the rendering thread.
+	 * 
+	 * @param command
+	 *            the change
+	 */
+	public void run(Runnable command) {
+		add(RUN, command, 0, 0, 0);
+	}
+
+	/**
+	 * @return number of recorded commands
+	 */
+	public int size() {
+		return size;
+	}
+
+	private void add(int code, Object target, float x, float y, float z) {
+		if (size == codes.length) {
+			codes = Arrays.copyOf(codes, size * 2);
+			targets = Arrays.copyOf(targets, size * 2);
+			values = Arrays.copyOf(values, size * 6);
+		}
+
+		codes[size] = code;
+		targets[size] = target;
+		values[size * 3] = x;
+		values[size * 3 + 1] = y;
+		values[size * 3 + 2] = z;
+		size++;
+	}
+
+	/**
+	 * Applies all commands (in order) and clears the buffer.
+	 * 
+	 * @param world
+	 *            world to add/remove objects to/from
+	 */
+	void commit(World world) {
+		for (int i = 0; i < size; i++) {
+			Object target = targets[i];
+			float x = values[i * 3];
+
+			switch (codes[i]) {
+			case TRANSLATE:
+				((Object3D) target).translate(x, values[i * 3 + 1],
+						values[i * 3 + 2]);
+				break;
+			case ROTATE_X:
+				((Object3D) target).rotateX(x);
+				break;
+			case ROTATE_Y:
+				((Object3D) target).rotateY(x);
+				break;
+			case ROTATE_Z:
+				((Object3D) target).rotateZ(x);
+				break;
+			case SET_VISIBILITY:
+				((Object3D) target).setVisibility(x != 0);
+				break;
+			case ADD_OBJECT:
+				world.addObject((Object3D) target);
+				break;
+			case REMOVE_OBJECT:
+				world.removeObject((Object3D) target);
+				break;
+			case RUN:
+				((Runnable) target).run();
+				break;
+			}
+
+			targets[i] = null;
+		}
+
+		size = 0;
+	}
+}
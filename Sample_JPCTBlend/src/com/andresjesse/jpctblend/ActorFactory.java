@@ -1,13 +1,34 @@
 package com.andresjesse.jpctblend;
 
+import java.lang.reflect.Constructor;
+import java.util.HashMap;
+import java.util.ServiceLoader;
+
 /**
- * Class designed to provide default builders for Actors
+ * Class designed to provide default builders for Actors. Actors are created
+ * by the {@link ActorBuilder} registered for their java class name (by
+ * {@link IActorProvider}s, found once through ServiceLoader). Classes without
+ * builder are still found by reflection in the actors package, once: a
+ * builder is then registered for them. Builders get the shared
+ * {@link ActorResources}.
+ * 
  * @author andres
  *
  */
 public class ActorFactory {
 	
-	private static final String actorsPackage = "com.andresjesse.jpctblend.actors";
+	private String actorsPackage = "com.andresjesse.jpctblend.actors";
+
+	// java class name (as exported by blender) -> builder
+	private HashMap<String, ActorBuilder> builders = new HashMap<String, ActorBuilder>();
+
+	private boolean providersLoaded = false;
+
+	// true while the providers register their builders
+	private boolean loadingProviders = false;
+
+	// meshs and textures shared by the actors
+	private ActorResources resources = new ActorResources();
 
 	private static ActorFactory instance;
 
@@ -17,41 +38,169 @@ public class ActorFactory {
 	private ActorFactory() {
 	}
 
-	public static ActorFactory getInstance() {
+	public static synchronized ActorFactory getInstance() {
 		if (instance == null)
 			instance = new ActorFactory();
 		return instance;
 	}
 
+	/**
+	 * Registers the builder of an actor class. Builders registered by hand
+	 * win over the ones of the providers (even if registered before the
+	 * providers are loaded).
+	 * 
+	 * @param actorClass
+	 *            java class name, as used in the scene (without package)
+	 * @param builder
+	 *            creates the actors
+	 */
+	public synchronized void register(String actorClass, ActorBuilder builder) {
+		if (loadingProviders && builders.containsKey(actorClass))
+			return;
+		builders.put(actorClass, builder);
+	}
+
+	public synchronized boolean isRegistered(String actorClass) {
+		loadProviders();
+		return builders.containsKey(actorClass);
+	}
+
+	/**
+	 * @return package where actor classes without builder are searched
+	 */
+	public synchronized String getActorsPackage() {
+		return actorsPackage;
+	}
+
+	public synchronized void setActorsPackage(String actorsPackage) {
+		this.actorsPackage = actorsPackage;
+	}
+
+	/**
+	 * @return resources handed to the actor builders
+	 */
+	public synchronized ActorResources getResources() {
+		return resources;
+	}
+
+	public synchronized void setResources(ActorResources resources) {
+		this.resources = resources;
+	}
+
 	/**
 	 * Create an Actor based on his java class name.
 	 * @param actorClass java class that implements IActor
 	 * @return the actor
 	 */
 	public IActor createFromString(String actorClass) {
+		ActorBuilder builder;
+		ActorResources res;
+		synchronized (this) {
+			builder = getBuilder(actorClass);
+			res = resources;
+		}
 
+		return builder.create(res);
+	}
+
+	/**
+	 * Starts loading the files used by the actors of a class (see
+	 * {@link ActorBuilder#prefetch(ActorResources)}).
+	 * 
+	 * @param actorClass
+	 *            java class name, as used in the scene
+	 */
+	public void prefetch(String actorClass) {
+		ActorBuilder builder;
+		ActorResources res;
+		synchronized (this) {
+			builder = getBuilder(actorClass);
+			res = resources;
+		}
+
+		builder.prefetch(res);
+	}
+
+	/**
+	 * @return the builder of an actor class (found by reflection, if not
+	 *         registered)
+	 */
+	private ActorBuilder getBuilder(String actorClass) {
+		loadProviders();
+
+		ActorBuilder builder = builders.get(actorClass);
+		if (builder == null) {
+			builder = reflectiveBuilder(actorClass);
+			builders.put(actorClass, builder);
+		}
+		return builder;
+	}
+
+	/**
+	 * Registers the builders of all providers (just the first time), except
+	 * for the actor classes already registered.
+	 */
+	private void loadProviders() {
+		if (providersLoaded)
+			return;
+		providersLoaded = true;
+
+		loadingProviders = true;
 		try {
-			Object unknownActor = Class.forName(actorsPackage+"."+actorClass).newInstance();
-
-			if (unknownActor instanceof IActor) {
-				System.out.println("JPCTBlend: create actor: "+actorsPackage+"."+actorClass);
-				return (IActor)unknownActor;
-			} else {
-				throw new RuntimeException(
-						"JPCTBlend error: Can't create actor, class "
-								+ actorsPackage+"."+actorClass
-								+ " must implement IActor interface!");
-			}
+			for (IActorProvider provider : ServiceLoader
+					.load(IActorProvider.class))
+				provider.registerActors(this);
+		} finally {
+			loadingProviders = false;
+		}
+	}
+
+	/**
+	 * Finds an actor class in the actors package.
+	 * 
+	 * @param actorClass
+	 *            java class name (without package)
+	 * @return a builder creating the actors by reflection, with the
+	 *         (ActorResources) constructor if the class has one
+	 */
+	private ActorBuilder reflectiveBuilder(String actorClass) {
+		final String className = actorsPackage + "." + actorClass;
+		final Class<?> cls;
+
+		try {
+			cls = Class.forName(className);
 		} catch (ClassNotFoundException e) {
 			throw new RuntimeException(
-					"JPCTBlend error: Can't create actor, class ''" + actorsPackage+"."+actorClass
+					"JPCTBlend error: Can't create actor, class ''" + className
 							+ "'' not found!\n Did you forgot to create it?");
-		} catch (InstantiationException e) {
-			e.printStackTrace();
-		} catch (IllegalAccessException e) {
-			e.printStackTrace();
 		}
 
-		return null;
+		if (!IActor.class.isAssignableFrom(cls))
+			throw new RuntimeException(
+					"JPCTBlend error: Can't create actor, class "
+							+ className
+							+ " must implement IActor interface!");
+
+		Constructor<?> withResources = null;
+		try {
+			withResources = cls.getConstructor(ActorResources.class);
+		} catch (NoSuchMethodException e) {
+			// no-arg constructor
+		}
+		final Constructor<?> constructor = withResources;
+
+		return new ActorBuilder() {
+			@Override
+			public IActor create(ActorResources resources) {
+				try {
+					if (constructor != null)
+						return (IActor) constructor.newInstance(resources);
+					return (IActor) cls.newInstance();
+				} catch (ReflectiveOperationException e) {
+					JPCTBlendLog.error("can't create actor " + cls.getName(), e);
+				}
+				return null;
+			}
+		};
 	}
 }
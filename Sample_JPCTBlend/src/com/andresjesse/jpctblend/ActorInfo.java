@@ -0,0 +1,47 @@
+package com.andresjesse.jpctblend;
+
+import com.threed.jpct.SimpleVector;
+
+/**
+ * Actor Info, used to store a parsed (blender) actor: his java class and the
+ * position/rotation given to the actor when it is created.
+ * 
+ * @author andres
+ * 
+ */
+public class ActorInfo {
+	private String javaClass;
+	private SimpleVector position;
+	private SimpleVector rotation;
+
+	public ActorInfo(String javaClass, SimpleVector position,
+			SimpleVector rotation) {
+		this.javaClass = javaClass;
+		this.position = position;
+		this.rotation = rotation;
+	}
+
+	public String getJavaClass() {
+		return javaClass;
+	}
+
+	public SimpleVector getPosition() {
+		return position;
+	}
+
+	public SimpleVector getRotation() {
+		return rotation;
+	}
+
+	public void setJavaClass(String javaClass) {
+		this.javaClass = javaClass;
+	}
+
+	public void setPosition(SimpleVector position) {
+		this.position = position;
+	}
+
+	public void setRotation(SimpleVector rotation) {
+		this.rotation = rotation;
+	}
+}
@@ -0,0 +1,233 @@
+package com.andresjesse.jpctblend;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+import com.threed.jpct.SimpleVector;
+
+/**
+ * Actor LOD, chooses which actors act at each frame by their distance to the
+ * camera. Each distance tier has an update interval (act every frame, every
+ * 4th, ...); actors farther than the last tier are suspended. Actors of the
+ * same tier are spread over the frames of the interval.
+ * 
+ * Actors are kept in a grid of square cells (XZ plane) and tiers are given
+ * per cell, only when the camera enters another cell or an actor moves to
+ * another cell, so nothing is scanned while the camera stays in its cell.
+ * See {@link SceneLoadOptions#setActorTiers(float[], int[])}.
+ * 
+ * @author andres
+ * 
+ */
+public class ActorLod {
+	private float[] distances;
+	private int[] intervals;
+	private float cellSize;
+
+	// actor indexes of each cell
+	private HashMap<Long, ArrayList<Integer>> cells = new HashMap<Long, ArrayList<Integer>>();
+	private long[] actorCells;
+
+	// tier of each actor (distances.length = suspended)
+	private int[] actorTiers;
+	private int[] tierCounts;
+
+	// actor indexes of each tier, by frame of the interval
+	private int[][][] buckets;
+
+	private long frame = 0;
+
+	// camera cell when tiers were given, and if they must be given again
+	private long cameraCell;
+	private boolean dirty = true;
+
+	/**
+	 * @param positions
+	 *            position of each actor (as loaded)
+	 * @param options
+	 *            tiers and cell size
+	 */
+	ActorLod(List<SimpleVector> positions, SceneLoadOptions options) {
+		distances = options.getActorTierDistances();
+		intervals = options.getActorTierIntervals();
+		cellSize = options.getActorCellSize();
+
+		if (distances.length != intervals.length)
+			throw new RuntimeException(
+					"JPCTBlend error: actor tiers need one interval per distance!");
+
+		actorCells = new long[positions.size()];
+		actorTiers = new int[positions.size()];
+		tierCounts = new int[distances.length + 1];
+		buckets = new int[distances.length][][];
+
+		for (int i = 0; i < positions.size(); i++) {
+			actorCells[i] = cellKey(positions.get(i));
+			cellActors(actorCells[i]).add(i);
+		}
+	}
+
+	private long cellKey(SimpleVector pos) {
+		return SceneCell.key((int) Math.floor(pos.x / cellSize),
+				(int) Math.floor(pos.z / cellSize));
+	}
+
+	private ArrayList<Integer> cellActors(long key) {
+		ArrayList<Integer> list = cells.get(key);
+		if (list == null) {
+			list = new ArrayList<Integer>();
+			cells.put(key, list);
+		}
+		return list;
+	}
+
+	/**
+	 * Collects the actors that must act in this frame.
+	 * 
+	 * @param camera
+	 *            camera position
+	 * @param due
+	 *            receives the actor indexes (at least one entry per actor)
+	 * @return number of actors in due
+	 */
+	int collect(SimpleVector camera, int[] due) {
+		long key = cellKey(camera);
+		if (dirty || key != cameraCell) {
+			cameraCell = key;
+			assignTiers(camera);
+		}
+
+		int count = 0;
+		for (int t = 0; t < buckets.length; t++) {
+			if (buckets[t] == null)
+				continue;
+
+			int[] bucket = buckets[t][(int) (frame % buckets[t].length)];
+			System.arraycopy(bucket, 0, due, count, bucket.length);
+			count += bucket.length;
+		}
+
+		// actors act in scene order
+		Arrays.sort(due, 0, count);
+
+		frame++;
+		return count;
+	}
+
+	/**
+	 * Places again the locatable actors that just acted.
+	 */
+	void acted(List<IActor> actors, int[] due, int count) {
+		for (int i = 0; i < count; i++) {
+			int index = due[i];
+			IActor actor = actors.get(index);
+
+			if (actor instanceof ILocatableActor)
+				place(index, ((ILocatableActor) actor).getPosition());
+		}
+	}
+
+	/**
+	 * Moves an actor to the cell of a position (e.g. a replaced actor, back
+	 * at its loaded position).
+	 * 
+	 * @param index
+	 *            actor index
+	 * @param position
+	 *            actor position
+	 */
+	void place(int index, SimpleVector position) {
+		long key = cellKey(position);
+
+		if (key != actorCells[index]) {
+			cells.get(actorCells[index]).remove(Integer.valueOf(index));
+			cellActors(key).add(index);
+			actorCells[index] = key;
+			dirty = true;
+		}
+	}
+
+	/**
+	 * Gives a tier to each cell (so to each actor) and rebuilds the buckets.
+	 */
+	private void assignTiers(SimpleVector camera) {
+		dirty = false;
+
+		for (int t = 0; t < tierCounts.length; t++)
+			tierCounts[t] = 0;
+
+		for (ArrayList<Integer> actorsInCell : cells.values()) {
+			if (actorsInCell.isEmpty())
+				continue;
+
+			int tier = tier(distance(actorCells[actorsInCell.get(0)], camera));
+
+			for (int index : actorsInCell) {
+				actorTiers[index] = tier;
+				tierCounts[tier]++;
+			}
+		}
+
+		for (int t = 0; t < distances.length; t++) {
+			int interval = intervals[t];
+			if (interval <= 0 || tierCounts[t] == 0) {
+				buckets[t] = null;
+				continue;
+			}
+
+			// actor i acts at frames where frame % interval == i % interval
+			int[] sizes = new int[interval];
+			for (int i = 0; i < actorTiers.length; i++)
+				if (actorTiers[i] == t)
+					sizes[i % interval]++;
+
+			buckets[t] = new int[interval][];
+			for (int f = 0; f < interval; f++)
+				buckets[t][f] = new int[sizes[f]];
+
+			int[] filled = new int[interval];
+			for (int i = 0; i < actorTiers.length; i++)
+				if (actorTiers[i] == t)
+					buckets[t][i % interval][filled[i % interval]++] = i;
+		}
+	}
+
+	private int tier(float distance) {
+		for (int t = 0; t < distances.length; t++) {
+			if (distance <= distances[t])
+				return intervals[t] > 0 ? t : distances.length;
+		}
+		return distances.length;
+	}
+
+	/**
+	 * @return distance from a point to the closest point of a cell (XZ plane)
+	 */
+	private float distance(long key, SimpleVector pos) {
+		float minX = (int) (key >> 32) * cellSize;
+		float minZ = (int) key * cellSize;
+
+		float dx = Math.max(0, Math.max(minX - pos.x, pos.x - minX - cellSize));
+		float dz = Math.max(0, Math.max(minZ - pos.z, pos.z - minZ - cellSize));
+
+		return (float) Math.sqrt(dx * dx + dz * dz);
+	}
+
+	/**
+	 * @param tier
+	 *            tier index
+	 * @return number of actors in a tier
+	 */
+	public int getActorCount(int tier) {
+		return tierCounts[tier];
+	}
+
+	/**
+	 * @return number of suspended actors (farther than the last tier)
+	 */
+	public int getSuspendedCount() {
+		return tierCounts[distances.length];
+	}
+}
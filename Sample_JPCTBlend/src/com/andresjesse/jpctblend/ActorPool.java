@@ -0,0 +1,101 @@
+package com.andresjesse.jpctblend;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+
+/**
+ * Actor Pool, keeps the poolable actors of removed scenes (per java class) so
+ * loading a scene again does not create new actors. See
+ * {@link IPoolableActor}.
+ * 
+ * @author andres
+ * 
+ */
+public class ActorPool {
+
+	// java class name (as exported by blender) -> free actors
+	private HashMap<String, ArrayDeque<IPoolableActor>> pools = new HashMap<String, ArrayDeque<IPoolableActor>>();
+
+	// max free actors kept per class
+	private int maxPerClass = Integer.MAX_VALUE;
+
+	private static ActorPool instance = null;
+
+	public static synchronized ActorPool getInstance() {
+		if (instance == null)
+			instance = new ActorPool();
+		return instance;
+	}
+
+	private ActorPool() {
+	}
+
+	/**
+	 * Takes a free actor (and reinitializes it).
+	 * 
+	 * @param actorClass
+	 *            java class name, as used in the scene
+	 * @return the actor, null if the pool has none
+	 */
+	public IPoolableActor obtain(String actorClass) {
+		IPoolableActor actor;
+		synchronized (this) {
+			ArrayDeque<IPoolableActor> pool = pools.get(actorClass);
+			actor = pool != null ? pool.poll() : null;
+		}
+
+		if (actor != null)
+			actor.reinitialize();
+
+		return actor;
+	}
+
+	/**
+	 * Resets an actor and gives it back to the pool (unless the pool of its
+	 * class is full). The actor must be out of the world.
+	 * 
+	 * @param actorClass
+	 *            java class name, as used in the scene
+	 * @param actor
+	 *            the actor
+	 */
+	public void free(String actorClass, IPoolableActor actor) {
+		actor.reset();
+
+		synchronized (this) {
+			ArrayDeque<IPoolableActor> pool = pools.get(actorClass);
+			if (pool == null) {
+				pool = new ArrayDeque<IPoolableActor>();
+				pools.put(actorClass, pool);
+			}
+
+			if (pool.size() < maxPerClass)
+				pool.push(actor);
+		}
+	}
+
+	/**
+	 * @param actorClass
+	 *            java class name
+	 * @return free actors of a class
+	 */
+	public synchronized int size(String actorClass) {
+		ArrayDeque<IPoolableActor> pool = pools.get(actorClass);
+		return pool != null ? pool.size() : 0;
+	}
+
+	public synchronized int getMaxPerClass() {
+		return maxPerClass;
+	}
+
+	public synchronized void setMaxPerClass(int maxPerClass) {
+		this.maxPerClass = maxPerClass;
+	}
+
+	/**
+	 * Drops all free actors.
+	 */
+	public synchronized void clear() {
+		pools.clear();
+	}
+}
@@ -0,0 +1,294 @@
+package com.andresjesse.jpctblend;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+
+import com.threed.jpct.Object3D;
+import com.threed.jpct.Texture;
+import com.threed.jpct.TextureManager;
+
+/**
+ * Actor Resources, the meshs and textures used by actors, cached and shared by
+ * path. The {@link ActorFactory} hands this context to every
+ * {@link ActorBuilder}, so actors get their meshs from here instead of
+ * reading them in their constructor:
+ *
+ * <pre>
+ * obj = resources.getMesh(&quot;media/actors/SampleActor.3ds&quot;);
+ * </pre>
+ *
+ * Loads are single flight (like {@link Object3DManager}, which also keeps the
+ * actor meshs): a path is read once, whoever asks for it meanwhile waits for
+ * that load. Builders announce their files in
+ * {@link ActorBuilder#prefetch(ActorResources)}; JPCTBlendScene calls it for
+ * every actor class of the scene before anything else is built, so the files
+ * are read in background while textures and instances are loaded, and
+ * creating the actors does no disk I/O.
+ *
+ * @author andres
+ *
+ */
+public class ActorResources {
+
+	// meshs retained in the Object3DManager (keyed by path)
+	private HashSet<String> retainedMeshs = new HashSet<String>();
+
+	// meshs being acquired by a background load (keyed by path)
+	private HashSet<String> prefetchingMeshs = new HashSet<String>();
+
+	// decoded textures, or their loads in progress (keyed by path)
+	private ConcurrentHashMap<String, FutureTask<Texture>> textures = new ConcurrentHashMap<String, FutureTask<Texture>>();
+
+	// background loads
+	private ExecutorService pool;
+	private int threads = 2;
+
+	// scenes using these resources (see retainScene())
+	private int scenes = 0;
+
+	/**
+	 * Starts loading a mesh in background, unless it is already held or being
+	 * loaded. Once loaded it is held (like the ones got by
+	 * {@link #getMesh(String)}) until {@link #release()}.
+	 *
+	 * @param path
+	 *            3DS file
+	 */
+	public void prefetchMesh(final String path) {
+		synchronized (this) {
+			if (retainedMeshs.contains(path) || !prefetchingMeshs.add(path))
+				return;
+		}
+
+		getPool().execute(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					Object3DManager.getInstance().acquireObject3D(path, path);
+					retained(path);
+				} catch (RuntimeException e) {
+					// getMesh() loads it again, and reports the error
+					JPCTBlendLog.debug("can't prefetch " + path);
+				} finally {
+					synchronized (ActorResources.this) {
+						prefetchingMeshs.remove(path);
+					}
+				}
+			}
+		});
+	}
+
+	/**
+	 * Starts decoding a texture in background, unless it is already decoded
+	 * or being decoded.
+	 *
+	 * @param path
+	 *            image file
+	 */
+	public void prefetchTexture(String path) {
+		FutureTask<Texture> task = requestTexture(path);
+		if (task != null)
+			getPool().execute(task);
+	}
+
+	/**
+	 * Gets a mesh, loading it (or waiting for its load) the first time. Each
+	 * call returns a new clone sharing the loaded mesh.
+	 *
+	 * @param path
+	 *            3DS file (just the first object is used)
+	 * @return a new object, with cleared transformations
+	 */
+	public Object3D getMesh(String path) {
+		Object3DManager manager = Object3DManager.getInstance();
+
+		boolean retained;
+		synchronized (this) {
+			retained = retainedMeshs.contains(path);
+		}
+
+		// no lock held while waiting for the load: it takes the JPCT lock
+		if (!retained) {
+			manager.acquireObject3D(path, path);
+			retained(path);
+		}
+
+		return manager.cloneObject3D(path);
+	}
+
+	/**
+	 * Holds an acquired mesh, releasing the reference if it was already held
+	 * (acquired by two threads at once).
+	 */
+	private void retained(String path) {
+		boolean duplicated;
+		synchronized (this) {
+			duplicated = !retainedMeshs.add(path);
+		}
+		if (duplicated)
+			Object3DManager.getInstance().releaseObject3D(path);
+	}
+
+	/**
+	 * Gets a texture, decoding it (or waiting for it) the first time. The
+	 * same texture is returned for the same path.
+	 *
+	 * @param path
+	 *            image file
+	 * @return the decoded texture, not added to the TextureManager (see
+	 *         {@link #addTexture(String)})
+	 */
+	public Texture getTexture(String path) {
+		FutureTask<Texture> task = requestTexture(path);
+		if (task != null)
+			task.run();
+		else
+			task = textures.get(path);
+
+		try {
+			return task.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(
+					"JPCTBlend error: interrupted while loading " + path, e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException("JPCTBlend error: Can't load texture "
+					+ path, e.getCause());
+		}
+	}
+
+	/**
+	 * Adds a texture to the TextureManager (keyed by its path), if it is not
+	 * there yet. Call it from the rendering thread, e.g. in
+	 * {@link IActor#addToWorld(com.threed.jpct.World)}.
+	 *
+	 * @param path
+	 *            image file
+	 * @return the TextureManager key (the path)
+	 */
+	public String addTexture(String path) {
+		if (!TextureManager.getInstance().containsTexture(path))
+			TextureManager.getInstance().addTexture(path, getTexture(path));
+		return path;
+	}
+
+	/**
+	 * @return a new decode task, if the caller must run it. null if the
+	 *         texture is decoded or some other caller is already decoding it.
+	 */
+	private FutureTask<Texture> requestTexture(final String path) {
+		if (textures.containsKey(path))
+			return null;
+
+		FutureTask<Texture> task = new FutureTask<Texture>(
+				new Callable<Texture>() {
+					@Override
+					public Texture call() {
+						return new Texture(path);
+					}
+				});
+
+		return textures.putIfAbsent(path, task) == null ? task : null;
+	}
+
+	private synchronized ExecutorService getPool() {
+		if (pool == null) {
+			pool = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, "JPCTBlend actor loader");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		return pool;
+	}
+
+	/**
+	 * @return threads used for background loads
+	 */
+	public synchronized int getThreads() {
+		return threads;
+	}
+
+	/**
+	 * @param threads
+	 *            threads used for background loads (from the next time loads
+	 *            are started after {@link #release()})
+	 */
+	public synchronized void setThreads(int threads) {
+		this.threads = threads;
+	}
+
+	/**
+	 * @return number of meshs held
+	 */
+	public synchronized int getMeshCount() {
+		return retainedMeshs.size();
+	}
+
+	/**
+	 * @return number of textures decoded (or being decoded)
+	 */
+	public int getTextureCount() {
+		return textures.size();
+	}
+
+	/**
+	 * A scene starts using these resources (JPCTBlendScene calls it before
+	 * creating its actors, and when it is added again).
+	 */
+	synchronized void retainScene() {
+		scenes++;
+	}
+
+	/**
+	 * A scene stops using these resources (JPCTBlendScene calls it once
+	 * removed). When no scene uses them anymore they are released (see
+	 * {@link #release()}), so actor meshs can be evicted from the
+	 * Object3DManager.
+	 */
+	void releaseScene() {
+		synchronized (this) {
+			if (scenes == 0)
+				throw new RuntimeException("Error: ActorResources released "
+						+ "more times than retained!");
+			if (--scenes > 0)
+				return;
+		}
+		release();
+	}
+
+	/**
+	 * Releases all meshs (in the Object3DManager), forgets all textures (they
+	 * stay in the TextureManager, if added) and stops the background threads.
+	 * Actors already created keep working. Meshs still being prefetched are
+	 * held until the next release. Called when the last scene using these
+	 * resources is removed.
+	 */
+	public void release() {
+		ArrayList<String> meshs;
+		synchronized (this) {
+			meshs = new ArrayList<String>(retainedMeshs);
+			retainedMeshs.clear();
+
+			if (pool != null) {
+				pool.shutdown();
+				pool = null;
+			}
+		}
+
+		for (String path : meshs)
+			Object3DManager.getInstance().releaseObject3D(path);
+
+		textures.clear();
+	}
+}
@@ -0,0 +1,274 @@
+package com.andresjesse.jpctblend;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import com.threed.jpct.World;
+
+/**
+ * Actor Scheduler, updates the scene actors in two phases. In the read phase
+ * every {@link IParallelActor} acts, on a fork/join pool (or on the calling
+ * thread, for one thread), recording its changes in its own command buffer.
+ * In the commit phase the rendering thread goes through the actors in scene
+ * order, applying the command buffers and calling act() on the other
+ * (serial) actors, so the result does not depend on thread timing. Timed
+ * and parallel actors get the simulation time elapsed since they last acted.
+ * 
+ * @author andres
+ * 
+ */
+public class ActorScheduler {
+
+	/**
+	 * Read phase over a range of actors, split until it is small enough.
+	 */
+	private class ReadTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final int from;
+		private final int to;
+
+		ReadTask(int from, int to) {
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= batchSize) {
+				read(from, to);
+			} else {
+				int mid = (from + to) >>> 1;
+				invokeAll(new ReadTask(from, mid), new ReadTask(mid, to));
+			}
+		}
+	}
+
+	private int threads;
+
+	// pool, created on first update (null for one thread)
+	private ForkJoinPool pool;
+
+	// actors being updated, and their command buffers (by index)
+	private List<IActor> actors;
+	private ActorCommandBuffer[] buffers = new ActorCommandBuffer[0];
+
+	// indexes of the actors acting in this update
+	private int[] due;
+
+	// simulation time (s) of the last act of each actor (-1 = never)
+	private double[] lastActs = new double[0];
+
+	// simulation time (s) and step of the current update
+	private double time;
+	private float dt;
+
+	// actors per read task
+	private int batchSize;
+
+	// last update times (ns)
+	private long readTime = 0;
+	private long commitTime = 0;
+
+	// gets the actors slower than actThreshold (ns, negative = not timed)
+	private ISceneUpdateListener listener;
+	private long actThreshold = -1;
+
+	// act time (ns) of each actor in the last update (null = not kept)
+	private long[] actTimes;
+
+	/**
+	 * @param threads
+	 *            read phase threads (1 = read on the calling thread)
+	 */
+	ActorScheduler(int threads) {
+		this.threads = Math.max(1, threads);
+	}
+
+	/**
+	 * Times each act() and reports the slow ones.
+	 * 
+	 * @param listener
+	 *            gets the actors slower than the threshold (null = actors are
+	 *            not timed)
+	 * @param threshold
+	 *            act time (ms) reported, negative = actors are not timed
+	 */
+	void setActListener(ISceneUpdateListener listener, float threshold) {
+		this.listener = listener;
+		this.actThreshold = listener == null || threshold < 0 ? -1
+				: (long) (threshold * 1000000);
+	}
+
+	/**
+	 * Keeps the act time of each actor (see {@link #getActTimes()}).
+	 */
+	void keepActTimes() {
+		actTimes = new long[0];
+	}
+
+	/**
+	 * @return act time (ns) of each actor (by index) in its last update, null
+	 *         unless {@link #keepActTimes()} was called
+	 */
+	long[] getActTimes() {
+		return actTimes;
+	}
+
+	/**
+	 * Updates some actors (read and commit phases). Call it from the rendering
+	 * thread.
+	 * 
+	 * @param actors
+	 *            scene actors
+	 * @param due
+	 *            indexes of the actors that act, in scene order
+	 * @param count
+	 *            number of indexes in due
+	 * @param world
+	 *            scene world
+	 * @param time
+	 *            simulation time (s), after this update
+	 * @param dt
+	 *            simulation time (s) advanced by this update
+	 */
+	void update(List<IActor> actors, int[] due, int count, World world,
+			double time, float dt) {
+		long start = System.nanoTime();
+
+		this.actors = actors;
+		this.due = due;
+		this.time = time;
+		this.dt = dt;
+
+		if (buffers.length != actors.size()) {
+			buffers = new ActorCommandBuffer[actors.size()];
+			for (int i = 0; i < buffers.length; i++)
+				if (actors.get(i) instanceof IParallelActor)
+					buffers[i] = new ActorCommandBuffer();
+
+			lastActs = new double[actors.size()];
+			Arrays.fill(lastActs, -1);
+
+			if (actTimes != null)
+				actTimes = new long[actors.size()];
+		}
+
+		if (threads > 1 && count > 1) {
+			if (pool == null)
+				pool = new ForkJoinPool(threads);
+
+			batchSize = Math.max(1, count / (threads * 4));
+			pool.invoke(new ReadTask(0, count));
+		} else {
+			read(0, count);
+		}
+
+		long read = System.nanoTime();
+		boolean timed = actThreshold >= 0 || actTimes != null;
+
+		for (int k = 0; k < count; k++) {
+			int i = due[k];
+			IActor actor = actors.get(i);
+
+			if (buffers[i] != null) {
+				buffers[i].commit(world);
+			} else {
+				long actStart = timed ? System.nanoTime() : 0;
+
+				if (actor instanceof ITimedActor)
+					((ITimedActor) actor).act(elapsed(i));
+				else
+					actor.act();
+
+				if (timed)
+					acted(i, actor, actStart);
+			}
+
+			lastActs[i] = time;
+		}
+
+		readTime = read - start;
+		commitTime = System.nanoTime() - read;
+	}
+
+	private void read(int from, int to) {
+		boolean timed = actThreshold >= 0 || actTimes != null;
+
+		for (int k = from; k < to; k++) {
+			int i = due[k];
+			if (buffers[i] == null)
+				continue;
+
+			IParallelActor actor = (IParallelActor) actors.get(i);
+			long actStart = timed ? System.nanoTime() : 0;
+
+			actor.act(buffers[i], elapsed(i));
+
+			if (timed)
+				acted(i, actor, actStart);
+		}
+	}
+
+	/**
+	 * Keeps the act time of an actor and reports it to the listener, if it
+	 * was slow enough.
+	 * 
+	 * @param actStart
+	 *            System.nanoTime() before act()
+	 */
+	private void acted(int i, IActor actor, long actStart) {
+		long actTime = System.nanoTime() - actStart;
+
+		if (actTimes != null)
+			actTimes[i] = actTime;
+		if (actThreshold >= 0 && actTime >= actThreshold)
+			listener.onActorActed(actor, actTime);
+	}
+
+	/**
+	 * @return simulation time since the last act of an actor (the update step
+	 *         if it never acted)
+	 */
+	private float elapsed(int i) {
+		return lastActs[i] < 0 ? dt : (float) (time - lastActs[i]);
+	}
+
+	/**
+	 * Forgets the last act of an actor (e.g. replaced by a new one), so it
+	 * acts next as if it never did.
+	 * 
+	 * @param i
+	 *            actor index
+	 */
+	void resetActor(int i) {
+		if (i < lastActs.length)
+			lastActs[i] = -1;
+	}
+
+	/**
+	 * Stops the pool threads (a new pool is created by the next update).
+	 */
+	void shutdown() {
+		if (pool != null) {
+			pool.shutdown();
+			pool = null;
+		}
+	}
+
+	/**
+	 * @return last read phase time (ns)
+	 */
+	public long getReadTime() {
+		return readTime;
+	}
+
+	/**
+	 * @return last commit phase time (ns), including serial actors
+	 */
+	public long getCommitTime() {
+		return commitTime;
+	}
+}
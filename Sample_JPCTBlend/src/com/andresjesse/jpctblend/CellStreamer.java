@@ -0,0 +1,384 @@
+package com.andresjesse.jpctblend;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import com.threed.jpct.Object3D;
+import com.threed.jpct.SimpleVector;
+import com.threed.jpct.World;
+
+/**
+ * Cell Streamer, keeps in the world just the instances around the camera.
+ * Instances are partitioned (by position) into a grid of square cells on the
+ * XZ plane. Cells closer than the view radius are loaded by background
+ * threads (the closest first) and added to the world by {@link #update()};
+ * cells farther than the unload radius are removed and their meshs released
+ * from the Object3DManager, so memory is bounded by the view radius and not
+ * by the level size. See {@link SceneLoadOptions#setViewRadius(float)}.
+ * 
+ * @author andres
+ * 
+ */
+public class CellStreamer {
+
+	/**
+	 * One load of a cell, run by a loader thread. A load cancelled while
+	 * running (or failed) releases its meshs by itself; a finished one is
+	 * released by {@link CellStreamer#update()}.
+	 */
+	class CellLoad implements Runnable, Comparable<CellLoad> {
+		final SceneCell cell;
+
+		// distance to the camera (load priority), updated while queued
+		float distance;
+
+		final ArrayList<Object3D> objects = new ArrayList<Object3D>();
+		final ArrayList<String> meshKeys = new ArrayList<String>();
+
+		private boolean cancelled = false;
+		private boolean done = false;
+
+		// the load threw, nothing to add (read after finish())
+		boolean failed = false;
+
+		CellLoad(SceneCell cell, float distance) {
+			this.cell = cell;
+			this.distance = distance;
+		}
+
+		@Override
+		public int compareTo(CellLoad other) {
+			return Float.compare(distance, other.distance);
+		}
+
+		synchronized void cancel() {
+			cancelled = true;
+		}
+
+		synchronized boolean isCancelled() {
+			return cancelled;
+		}
+
+		/**
+		 * @return false if the load was cancelled meanwhile
+		 */
+		private synchronized boolean finish() {
+			done = true;
+			return !cancelled;
+		}
+
+		@Override
+		public void run() {
+			if (isCancelled())
+				return;
+
+			try {
+				load();
+			} catch (RuntimeException e) {
+				JPCTBlendLog.error("can't load cell " + cell.x + "," + cell.z,
+						e);
+				release();
+				objects.clear();
+				failed = true;
+			}
+
+			if (finish())
+				loadedQueue.add(this);
+			else
+				release();
+		}
+
+		private void load() {
+			// mesh -> first instance, which owns the compiled data
+			HashMap<String, Object3D> sharingSources = new HashMap<String, Object3D>();
+
+			for (int index : cell.instanceIndexes) {
+				InstanceInfo info = instanceInfos.get(index);
+				// keyed by path, as the meshs of JPCTBlendScene
+				String meshKey = meshPath + info.getMeshFile();
+				Object3D source = sharingSources.get(meshKey);
+
+				if (source == null) {
+					Object3DManager.getInstance().acquireObject3D(meshKey,
+							meshKey, stats, false);
+					meshKeys.add(meshKey);
+				}
+
+				Object3D obj = JPCTBlendScene.createInstance(meshKey, info);
+
+				if (source == null)
+					sharingSources.put(meshKey, obj);
+				else
+					obj.shareCompiledData(source);
+
+				obj.build();
+				// build() resets the pivot, see JPCTBlendScene.fixPivots()
+				obj.setRotationPivot(new SimpleVector());
+
+				objects.add(obj);
+			}
+		}
+
+		/**
+		 * Releases the acquired meshs (once).
+		 */
+		private void release() {
+			for (String key : meshKeys)
+				Object3DManager.getInstance().releaseObject3D(key);
+			meshKeys.clear();
+		}
+	}
+
+	private World world;
+
+	// scene "meshs" folder
+	private String meshPath;
+
+	private List<InstanceInfo> instanceInfos;
+
+	// records mesh loads and cache hits of the scene
+	private SceneLoadStats stats;
+
+	private float cellSize;
+	private float viewRadius;
+	private float unloadRadius;
+	private int threads;
+
+	private HashMap<Long, SceneCell> cells = new HashMap<Long, SceneCell>();
+
+	// loads finished by loader threads, added to the world by update()
+	private ConcurrentLinkedQueue<CellLoad> loadedQueue = new ConcurrentLinkedQueue<CellLoad>();
+
+	// loader threads, only alive while streaming
+	private ThreadPoolExecutor pool;
+
+	// camera position when cells were last checked
+	private SimpleVector checkedPosition;
+
+	private int loadedCells = 0;
+	private int loadingCells = 0;
+	private int loadedObjects = 0;
+
+	/**
+	 * Partitions the instances into cells. Nothing is loaded until
+	 * {@link #start()}.
+	 * 
+	 * @param world
+	 *            scene world
+	 * @param sceneBasePath
+	 *            scene path (contains the "meshs" folder)
+	 * @param instanceInfos
+	 *            parsed instances
+	 * @param options
+	 *            cell size, radiuses and threads
+	 * @param stats
+	 *            load stats of the scene (mesh loads are added as cells load)
+	 */
+	CellStreamer(World world, String sceneBasePath,
+			List<InstanceInfo> instanceInfos, SceneLoadOptions options,
+			SceneLoadStats stats) {
+		this.world = world;
+		this.meshPath = sceneBasePath + "meshs" + File.separator;
+		this.instanceInfos = instanceInfos;
+		this.stats = stats;
+
+		cellSize = options.getCellSize();
+		viewRadius = options.getViewRadius();
+		unloadRadius = options.getUnloadRadius() > viewRadius ? options
+				.getUnloadRadius() : viewRadius + cellSize;
+		threads = Math.max(1, options.getCellThreads());
+
+		for (int i = 0; i < instanceInfos.size(); i++) {
+			SimpleVector pos = instanceInfos.get(i).getPosition();
+			int x = (int) Math.floor(pos.x / cellSize);
+			int z = (int) Math.floor(pos.z / cellSize);
+
+			SceneCell cell = cells.get(SceneCell.key(x, z));
+			if (cell == null) {
+				cell = new SceneCell(x, z);
+				cells.put(SceneCell.key(x, z), cell);
+			}
+			cell.instanceIndexes.add(i);
+		}
+	}
+
+	/**
+	 * Starts the loader threads. Cells are requested by the next
+	 * {@link #update()}.
+	 */
+	void start() {
+		pool = new ThreadPoolExecutor(threads, threads, 0L,
+				TimeUnit.MILLISECONDS, new PriorityBlockingQueue<Runnable>(),
+				new ThreadFactory() {
+					@Override
+					public Thread newThread(Runnable r) {
+						Thread thread = new Thread(r, "JPCTBlend cell loader");
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+		checkedPosition = null;
+	}
+
+	/**
+	 * Unloads all cells and stops the loader threads. Loads still running
+	 * release their meshs when they finish.
+	 */
+	void stop() {
+		for (SceneCell cell : cells.values())
+			unloadCell(cell);
+
+		pool.shutdown();
+		pool = null;
+
+		addLoadedCells(Long.MAX_VALUE);
+	}
+
+	/**
+	 * Requests/unloads cells around the camera (when it moved enough) and adds
+	 * the cells loaded meanwhile to the world. Call it from the rendering
+	 * thread, once per frame.
+	 * 
+	 * @param deadline
+	 *            System.nanoTime() deadline for adding loaded cells (at least
+	 *            one is added per call)
+	 */
+	void update(long deadline) {
+		SimpleVector camera = world.getCamera().getPosition();
+
+		if (checkedPosition == null
+				|| checkedPosition.distance(camera) > cellSize * 0.25f) {
+			checkedPosition = camera;
+
+			reprioritize(camera);
+
+			for (SceneCell cell : cells.values()) {
+				float distance = distance(cell, camera);
+
+				if (cell.state == SceneCell.UNLOADED && distance <= viewRadius) {
+					cell.load = new CellLoad(cell, distance);
+					cell.state = SceneCell.LOADING;
+					loadingCells++;
+					pool.execute(cell.load);
+				} else if (cell.state != SceneCell.UNLOADED
+						&& distance > unloadRadius) {
+					unloadCell(cell);
+				}
+			}
+		}
+
+		addLoadedCells(deadline);
+	}
+
+	/**
+	 * Updates the distance of the queued loads to the camera, so the cells
+	 * now closest load first.
+	 */
+	private void reprioritize(SimpleVector camera) {
+		ArrayList<Runnable> queued = new ArrayList<Runnable>();
+		pool.getQueue().drainTo(queued);
+
+		for (Runnable r : queued) {
+			CellLoad load = (CellLoad) r;
+			load.distance = distance(load.cell, camera);
+		}
+		pool.getQueue().addAll(queued);
+	}
+
+	/**
+	 * @return distance from a point to the closest point of a cell (XZ plane)
+	 */
+	private float distance(SceneCell cell, SimpleVector pos) {
+		float minX = cell.x * cellSize;
+		float minZ = cell.z * cellSize;
+
+		float dx = Math.max(0, Math.max(minX - pos.x, pos.x - minX - cellSize));
+		float dz = Math.max(0, Math.max(minZ - pos.z, pos.z - minZ - cellSize));
+
+		return (float) Math.sqrt(dx * dx + dz * dz);
+	}
+
+	private void addLoadedCells(long deadline) {
+		CellLoad load;
+		while ((load = loadedQueue.poll()) != null) {
+			if (load.isCancelled()) {
+				load.release();
+			} else if (load.failed) {
+				// not requested again until it leaves the unload radius
+				load.cell.state = SceneCell.FAILED;
+				loadingCells--;
+			} else {
+				for (int i = 0; i < load.objects.size(); i++) {
+					Object3D obj = load.objects.get(i);
+					int index = load.cell.instanceIndexes.get(i);
+
+					// set here: textures are added by the rendering thread
+					obj.setTexture(instanceInfos.get(index).getTexture());
+					world.addObject(obj);
+				}
+
+				load.cell.state = SceneCell.LOADED;
+				loadingCells--;
+				loadedCells++;
+				loadedObjects += load.objects.size();
+			}
+
+			if (System.nanoTime() >= deadline)
+				return;
+		}
+	}
+
+	private void unloadCell(SceneCell cell) {
+		if (cell.state == SceneCell.LOADING) {
+			// released by the loader thread or by addLoadedCells()
+			cell.load.cancel();
+			pool.remove(cell.load);
+			loadingCells--;
+		} else if (cell.state == SceneCell.LOADED) {
+			for (Object3D obj : cell.load.objects)
+				world.removeObject(obj);
+			cell.load.release();
+
+			loadedCells--;
+			loadedObjects -= cell.load.objects.size();
+		}
+
+		cell.load = null;
+		cell.state = SceneCell.UNLOADED;
+	}
+
+	/**
+	 * @return number of (non empty) cells
+	 */
+	public int getCellCount() {
+		return cells.size();
+	}
+
+	/**
+	 * @return cells currently in the world
+	 */
+	public int getLoadedCellCount() {
+		return loadedCells;
+	}
+
+	/**
+	 * @return cells requested and not in the world yet
+	 */
+	public int getLoadingCellCount() {
+		return loadingCells;
+	}
+
+	/**
+	 * @return objects (instances) currently in the world
+	 */
+	public int getLoadedObjectCount() {
+		return loadedObjects;
+	}
+}
@@ -0,0 +1,324 @@
+package com.andresjesse.jpctblend;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Date;
+
+import com.threed.jpct.SimpleVector;
+
+/**
+ * Compiled (binary) scene. This is the loader side of {@link SceneCompiler}:
+ * the file is memory mapped and read in place, strings are decoded once from
+ * the string table and all vectors are read directly from the packed float
+ * arrays. No DOM is created.
+ *
+ * File layout (big endian, every section starts 4 bytes aligned):
+ * <ul>
+ * <li>header: magic, format version</li>
+ * <li>string table: count, then (byte length, UTF-8 bytes) per string</li>
+ * <li>exporter info: author, contact, script (string indexes), date, version</li>
+ * <li>textures: count, name indexes</li>
+ * <li>ambient light: flag, rgb</li>
+ * <li>lights: count, positions, colors, distances</li>
+ * <li>cameras: count, look at points, positions</li>
+ * <li>instances: count, mesh indexes, texture indexes, positions, rotations,
+ * scales</li>
+ * <li>actors: count, class indexes, positions, rotations</li>
+ * </ul>
+ *
+ * @author andres
+ *
+ */
+public final class CompiledScene {
+
+	/** Extension used by compiled scene files. */
+	public static final String FILE_EXTENSION = ".jbs";
+
+	static final int MAGIC = 0x4A504342; // "JPCB"
+	static final int FORMAT_VERSION = 1;
+
+	static final int NO_STRING = -1;
+	static final long NO_DATE = Long.MIN_VALUE;
+
+	static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private final MappedByteBuffer buffer;
+
+	private final String[] strings;
+	// mesh file names, built (once) from the mesh_name strings
+	private final String[] meshFiles;
+
+	private ExporterInfo exporterInfo;
+
+	private int textureCount;
+	private int texturesOffset;
+
+	private boolean hasAmbientLight;
+	private int ambientOffset;
+
+	private int lightCount;
+	private int lightPositionsOffset;
+	private int lightColorsOffset;
+	private int lightDistancesOffset;
+
+	private int cameraCount;
+	private int cameraLookAtsOffset;
+	private int cameraPositionsOffset;
+
+	private int instanceCount;
+	private int instanceMeshsOffset;
+	private int instanceTexturesOffset;
+	private int instancePositionsOffset;
+	private int instanceRotationsOffset;
+	private int instanceScalesOffset;
+
+	private int actorCount;
+	private int actorClassesOffset;
+	private int actorPositionsOffset;
+	private int actorRotationsOffset;
+
+	/**
+	 * Maps and opens a compiled scene.
+	 *
+	 * @param file
+	 *            compiled scene file
+	 * @return the opened scene
+	 * @throws IOException
+	 *             if the file can't be mapped
+	 */
+	public static CompiledScene open(File file) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = raf.getChannel();
+			return new CompiledScene(channel.map(FileChannel.MapMode.READ_ONLY,
+					0, channel.size()));
+		} finally {
+			// the mapping stays valid after the channel is closed
+			raf.close();
+		}
+	}
+
+	private CompiledScene(MappedByteBuffer buffer) {
+		this.buffer = buffer;
+
+		int pos = 0;
+
+		if (buffer.getInt(pos) != MAGIC)
+			throw new RuntimeException(
+					"JPCTBlend error: not a compiled jpctblend scene!");
+		pos += 4;
+
+		int formatVersion = buffer.getInt(pos);
+		if (formatVersion != FORMAT_VERSION)
+			throw new RuntimeException(
+					"JPCTBlend error: compiled scene format version '"
+							+ formatVersion + "' is not supported (expected '"
+							+ FORMAT_VERSION
+							+ "'), please compile your scene again!");
+		pos += 4;
+
+		// string table
+		strings = new String[buffer.getInt(pos)];
+		meshFiles = new String[strings.length];
+		pos += 4;
+
+		byte[] scratch = new byte[64];
+		for (int i = 0; i < strings.length; i++) {
+			int len = buffer.getInt(pos);
+			pos += 4;
+
+			if (scratch.length < len)
+				scratch = new byte[len];
+
+			buffer.position(pos);
+			buffer.get(scratch, 0, len);
+			strings[i] = new String(scratch, 0, len, UTF8);
+			pos += len;
+		}
+		pos = align(pos);
+
+		// exporter info
+		String author = getString(buffer.getInt(pos));
+		String contact = getString(buffer.getInt(pos + 4));
+		String script = getString(buffer.getInt(pos + 8));
+		long date = buffer.getLong(pos + 12);
+		int version = buffer.getInt(pos + 20);
+		pos += 24;
+
+		exporterInfo = new ExporterInfo(author, contact,
+				date == NO_DATE ? null : new Date(date), script, version);
+
+		// textures
+		textureCount = buffer.getInt(pos);
+		texturesOffset = pos + 4;
+		pos = texturesOffset + textureCount * 4;
+
+		// ambient light
+		hasAmbientLight = buffer.getInt(pos) != 0;
+		ambientOffset = pos + 4;
+		pos = ambientOffset + 12;
+
+		// lights
+		lightCount = buffer.getInt(pos);
+		lightPositionsOffset = pos + 4;
+		lightColorsOffset = lightPositionsOffset + lightCount * 12;
+		lightDistancesOffset = lightColorsOffset + lightCount * 12;
+		pos = lightDistancesOffset + lightCount * 4;
+
+		// cameras
+		cameraCount = buffer.getInt(pos);
+		cameraLookAtsOffset = pos + 4;
+		cameraPositionsOffset = cameraLookAtsOffset + cameraCount * 12;
+		pos = cameraPositionsOffset + cameraCount * 12;
+
+		// instances
+		instanceCount = buffer.getInt(pos);
+		instanceMeshsOffset = pos + 4;
+		instanceTexturesOffset = instanceMeshsOffset + instanceCount * 4;
+		instancePositionsOffset = instanceTexturesOffset + instanceCount * 4;
+		instanceRotationsOffset = instancePositionsOffset + instanceCount * 12;
+		instanceScalesOffset = instanceRotationsOffset + instanceCount * 12;
+		pos = instanceScalesOffset + instanceCount * 12;
+
+		// actors
+		actorCount = buffer.getInt(pos);
+		actorClassesOffset = pos + 4;
+		actorPositionsOffset = actorClassesOffset + actorCount * 4;
+		actorRotationsOffset = actorPositionsOffset + actorCount * 12;
+	}
+
+	static int align(int pos) {
+		return (pos + 3) & ~3;
+	}
+
+	/**
+	 * @return the string of an index, null for {@link #NO_STRING} (a missing
+	 *         attribute)
+	 */
+	private String getString(int index) {
+		return index == NO_STRING ? null : strings[index];
+	}
+
+	private SimpleVector getVector(int offset, int i, SimpleVector out) {
+		if (out == null)
+			out = new SimpleVector();
+
+		int pos = offset + i * 12;
+		out.set(buffer.getFloat(pos), buffer.getFloat(pos + 4),
+				buffer.getFloat(pos + 8));
+		return out;
+	}
+
+	public ExporterInfo getExporterInfo() {
+		return exporterInfo;
+	}
+
+	public int getTextureCount() {
+		return textureCount;
+	}
+
+	public String getTextureName(int i) {
+		return getString(buffer.getInt(texturesOffset + i * 4));
+	}
+
+	public boolean hasAmbientLight() {
+		return hasAmbientLight;
+	}
+
+	public SimpleVector getAmbientLight() {
+		return getVector(ambientOffset, 0, null);
+	}
+
+	public int getLightCount() {
+		return lightCount;
+	}
+
+	public SimpleVector getLightPosition(int i, SimpleVector out) {
+		return getVector(lightPositionsOffset, i, out);
+	}
+
+	public SimpleVector getLightColor(int i, SimpleVector out) {
+		return getVector(lightColorsOffset, i, out);
+	}
+
+	public float getLightDistance(int i) {
+		return buffer.getFloat(lightDistancesOffset + i * 4);
+	}
+
+	public int getCameraCount() {
+		return cameraCount;
+	}
+
+	public SimpleVector getCameraLookAt(int i) {
+		return getVector(cameraLookAtsOffset, i, null);
+	}
+
+	public SimpleVector getCameraPosition(int i) {
+		return getVector(cameraPositionsOffset, i, null);
+	}
+
+	public int getInstanceCount() {
+		return instanceCount;
+	}
+
+	/**
+	 * @param i
+	 *            instance index
+	 * @return the mesh name exported by blender (without extension)
+	 */
+	public String getInstanceMeshName(int i) {
+		return getString(buffer.getInt(instanceMeshsOffset + i * 4));
+	}
+
+	/**
+	 * @param i
+	 *            instance index
+	 * @return the mesh file name (inside the scene "meshs" folder)
+	 */
+	public String getInstanceMeshFile(int i) {
+		int index = buffer.getInt(instanceMeshsOffset + i * 4);
+		// no mesh name: same file name the xml parsers give
+		if (index == NO_STRING)
+			return null + ".3ds";
+
+		if (meshFiles[index] == null)
+			meshFiles[index] = strings[index] + ".3ds";
+		return meshFiles[index];
+	}
+
+	public String getInstanceTexture(int i) {
+		return getString(buffer.getInt(instanceTexturesOffset + i * 4));
+	}
+
+	public SimpleVector getInstancePosition(int i, SimpleVector out) {
+		return getVector(instancePositionsOffset, i, out);
+	}
+
+	public SimpleVector getInstanceRotation(int i, SimpleVector out) {
+		return getVector(instanceRotationsOffset, i, out);
+	}
+
+	public SimpleVector getInstanceScale(int i, SimpleVector out) {
+		return getVector(instanceScalesOffset, i, out);
+	}
+
+	public int getActorCount() {
+		return actorCount;
+	}
+
+	public String getActorClass(int i) {
+		return getString(buffer.getInt(actorClassesOffset + i * 4));
+	}
+
+	public SimpleVector getActorPosition(int i, SimpleVector out) {
+		return getVector(actorPositionsOffset, i, out);
+	}
+
+	public SimpleVector getActorRotation(int i, SimpleVector out) {
+		return getVector(actorRotationsOffset, i, out);
+	}
+}
@@ -0,0 +1,398 @@
+package com.andresjesse.jpctblend;
+
+import javax.xml.stream.XMLStreamReader;
+
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+import com.threed.jpct.SimpleVector;
+
+/**
+ * Element Attributes, typed decoding of the attributes of one xml element.
+ * The attributes are collected once per element (from a DOM node or from a
+ * StAX reader), then read by name. Numbers are parsed straight from the
+ * attribute characters into primitives or caller supplied arrays: no split,
+ * no substrings and no boxing. One instance is meant to be reused for every
+ * element of a parse (it is not thread safe).
+ *
+ * <pre>
+ * attrs.set(node);
+ * attrs.getFloats(&quot;position&quot;, values, 0, 3);
+ * </pre>
+ *
+ * @author andres
+ *
+ */
+public final class ElementAttributes {
+
+	// double bits below float precision, and half a float ulp in those bits
+	private static final int EXTRA_BITS = 52 - 23;
+	private static final long EXTRA_MASK = (1L << EXTRA_BITS) - 1;
+	private static final long HALF_FLOAT_ULP = 1L << (EXTRA_BITS - 1);
+	// max error (in double ulps) of the double approximation, with margin
+	private static final long MAX_ERROR = 8;
+
+	private static final double[] POWERS_OF_TEN = { 1e0, 1e1, 1e2, 1e3, 1e4,
+			1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16,
+			1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+
+	private String[] names = new String[8];
+	private String[] values = new String[8];
+	private int count = 0;
+
+	/**
+	 * Collects the attributes of a DOM element.
+	 *
+	 * @param element
+	 *            element node
+	 * @return this
+	 */
+	public ElementAttributes set(Node element) {
+		NamedNodeMap attMap = element.getAttributes();
+		int len = attMap != null ? attMap.getLength() : 0;
+
+		ensureCapacity(len);
+		count = 0;
+
+		for (int i = 0; i < len; i++) {
+			Node attr = attMap.item(i);
+			if (attr.getNodeType() == Node.ATTRIBUTE_NODE) {
+				names[count] = attr.getNodeName();
+				values[count] = attr.getNodeValue();
+				count++;
+			}
+		}
+		return this;
+	}
+
+	/**
+	 * Collects the attributes of the current (start) element of a StAX
+	 * reader.
+	 *
+	 * @param reader
+	 *            reader positioned at a START_ELEMENT
+	 * @return this
+	 */
+	public ElementAttributes set(XMLStreamReader reader) {
+		int len = reader.getAttributeCount();
+
+		ensureCapacity(len);
+		count = len;
+
+		for (int i = 0; i < len; i++) {
+			names[i] = reader.getAttributeLocalName(i);
+			values[i] = reader.getAttributeValue(i);
+		}
+		return this;
+	}
+
+	private void ensureCapacity(int len) {
+		if (names.length < len) {
+			names = new String[len];
+			values = new String[len];
+		}
+	}
+
+	/**
+	 * @return number of attributes of the element
+	 */
+	public int size() {
+		return count;
+	}
+
+	/**
+	 * @param name
+	 *            attribute name
+	 * @return index of the attribute, -1 if the element does not have it
+	 */
+	public int indexOf(String name) {
+		for (int i = 0; i < count; i++)
+			if (names[i].equals(name))
+				return i;
+		return -1;
+	}
+
+	public boolean has(String name) {
+		return indexOf(name) >= 0;
+	}
+
+	/**
+	 * @param name
+	 *            attribute name
+	 * @return the value, null if the element does not have it
+	 */
+	public String getString(String name) {
+		int i = indexOf(name);
+		return i >= 0 ? values[i] : null;
+	}
+
+	/**
+	 * @param name
+	 *            attribute name
+	 * @param defaultValue
+	 *            returned if the element does not have the attribute
+	 * @return the value
+	 */
+	public float getFloat(String name, float defaultValue) {
+		int i = indexOf(name);
+		if (i < 0)
+			return defaultValue;
+		return parseFloat(values[i], 0, values[i].length());
+	}
+
+	/**
+	 * @param name
+	 *            attribute name
+	 * @param defaultValue
+	 *            returned if the element does not have the attribute
+	 * @return the value
+	 */
+	public int getInt(String name, int defaultValue) {
+		int i = indexOf(name);
+		if (i < 0)
+			return defaultValue;
+		return parseInt(values[i], 0, values[i].length());
+	}
+
+	/**
+	 * Reads a comma separated list of floats (e.g. "x,y,z").
+	 *
+	 * @param name
+	 *            attribute name
+	 * @param out
+	 *            where the values are stored
+	 * @param offset
+	 *            first index written in out
+	 * @param len
+	 *            number of values expected (extra values are ignored, like
+	 *            String.split(","))
+	 * @return false if the element does not have the attribute (out is not
+	 *         changed)
+	 */
+	public boolean getFloats(String name, float[] out, int offset, int len) {
+		int i = indexOf(name);
+		if (i < 0)
+			return false;
+
+		if (parseFloats(values[i], out, offset, len) < len)
+			throw new NumberFormatException("JPCTBlend error: attribute '"
+					+ name + "' must have " + len + " values: " + values[i]);
+		return true;
+	}
+
+	/**
+	 * Reads a vector ("x,y,z"). Values after the third one (e.g. a trailing
+	 * comma) are ignored, like String.split(",").
+	 *
+	 * @param name
+	 *            attribute name
+	 * @param out
+	 *            vector to set (a new one is created if null)
+	 * @return the vector, null if the element does not have the attribute
+	 */
+	public SimpleVector getVector(String name, SimpleVector out) {
+		int i = indexOf(name);
+		if (i < 0)
+			return null;
+
+		String value = values[i];
+		int comma1 = value.indexOf(',');
+		int comma2 = comma1 < 0 ? -1 : value.indexOf(',', comma1 + 1);
+		int end = comma2 < 0 ? -1 : value.indexOf(',', comma2 + 1);
+		if (end < 0)
+			end = value.length();
+		if (comma2 < 0)
+			throw new NumberFormatException("JPCTBlend error: attribute '"
+					+ name + "' is not a vector: " + value);
+
+		if (out == null)
+			out = new SimpleVector();
+		out.set(parseFloat(value, 0, comma1),
+				parseFloat(value, comma1 + 1, comma2),
+				parseFloat(value, comma2 + 1, end));
+		return out;
+	}
+
+	// =================================================================Parsers
+
+	/**
+	 * Parses a comma separated list of floats.
+	 *
+	 * @param value
+	 *            the characters
+	 * @param out
+	 *            where the values are stored
+	 * @param offset
+	 *            first index written in out
+	 * @param max
+	 *            max number of values read
+	 * @return number of values found (even if more than max)
+	 */
+	public static int parseFloats(CharSequence value, float[] out,
+			int offset, int max) {
+		int found = 0;
+		int start = 0;
+		int len = value.length();
+
+		for (int i = 0; i <= len; i++) {
+			if (i == len || value.charAt(i) == ',') {
+				if (found < max)
+					out[offset + found] = parseFloat(value, start, i);
+				found++;
+				start = i + 1;
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * Parses a decimal float (as written by blender: optional sign, digits,
+	 * optional fraction and exponent), rounded exactly like
+	 * {@link Float#parseFloat(String)}. Values the fast path can't round
+	 * safely (very long, very small or very large numbers, and values lying
+	 * too close to the middle of two floats) are given to
+	 * {@link Float#parseFloat(String)}.
+	 *
+	 * @param value
+	 *            the characters
+	 * @param start
+	 *            first char (inclusive)
+	 * @param end
+	 *            last char (exclusive)
+	 * @return the value
+	 */
+	public static float parseFloat(CharSequence value, int start, int end) {
+		while (start < end && value.charAt(start) == ' ')
+			start++;
+		while (end > start && value.charAt(end - 1) == ' ')
+			end--;
+
+		int i = start;
+		boolean negative = false;
+
+		if (i < end && (value.charAt(i) == '-' || value.charAt(i) == '+')) {
+			negative = value.charAt(i) == '-';
+			i++;
+		}
+
+		long mantissa = 0;
+		int digits = 0;
+		int exponent = 0;
+		boolean anyDigit = false;
+		boolean point = false;
+
+		for (; i < end; i++) {
+			char c = value.charAt(i);
+			if (c >= '0' && c <= '9') {
+				anyDigit = true;
+				// leading zeros are not significant
+				if (mantissa != 0 || c != '0') {
+					if (digits == 18)
+						return fallback(value, start, end);
+					mantissa = mantissa * 10 + (c - '0');
+					digits++;
+				}
+				if (point)
+					exponent--;
+			} else if (c == '.' && !point) {
+				point = true;
+			} else {
+				break;
+			}
+		}
+
+		if (!anyDigit)
+			return fallback(value, start, end);
+
+		if (i < end) {
+			char c = value.charAt(i);
+			if (c != 'e' && c != 'E')
+				return fallback(value, start, end);
+			i++;
+
+			boolean negativeExp = false;
+			if (i < end && (value.charAt(i) == '-' || value.charAt(i) == '+')) {
+				negativeExp = value.charAt(i) == '-';
+				i++;
+			}
+			if (i == end)
+				return fallback(value, start, end);
+
+			int exp = 0;
+			for (; i < end; i++) {
+				c = value.charAt(i);
+				if (c < '0' || c > '9' || exp > 1000)
+					return fallback(value, start, end);
+				exp = exp * 10 + (c - '0');
+			}
+			exponent += negativeExp ? -exp : exp;
+		}
+
+		if (mantissa == 0)
+			return negative ? -0.0f : 0.0f;
+
+		// m * 10^e in double precision (each step rounds once)
+		double d = mantissa;
+		if (exponent >= 0) {
+			if (exponent > 22)
+				return fallback(value, start, end);
+			d *= POWERS_OF_TEN[exponent];
+		} else if (exponent >= -22) {
+			d /= POWERS_OF_TEN[-exponent];
+		} else if (exponent >= -44) {
+			d /= POWERS_OF_TEN[22];
+			d /= POWERS_OF_TEN[-exponent - 22];
+		} else {
+			return fallback(value, start, end);
+		}
+
+		if (d < Float.MIN_NORMAL || d > Float.MAX_VALUE)
+			return fallback(value, start, end);
+
+		// the double is a few ulps away from the exact value: rounding it to
+		// float is exact unless it lies near the middle of two floats
+		long extra = Double.doubleToRawLongBits(d) & EXTRA_MASK;
+		if (Math.abs(extra - HALF_FLOAT_ULP) <= MAX_ERROR)
+			return fallback(value, start, end);
+
+		float f = (float) d;
+		return negative ? -f : f;
+	}
+
+	private static float fallback(CharSequence value, int start, int end) {
+		return Float.parseFloat(value.subSequence(start, end).toString());
+	}
+
+	/**
+	 * Parses a decimal int (optional sign, digits).
+	 *
+	 * @param value
+	 *            the characters
+	 * @param start
+	 *            first char (inclusive)
+	 * @param end
+	 *            last char (exclusive)
+	 * @return the value
+	 */
+	public static int parseInt(CharSequence value, int start, int end) {
+		int i = start;
+		boolean negative = false;
+
+		if (i < end && (value.charAt(i) == '-' || value.charAt(i) == '+')) {
+			negative = value.charAt(i) == '-';
+			i++;
+		}
+		if (i == end || end - i > 9)
+			return Integer.parseInt(value.subSequence(start, end).toString());
+
+		int result = 0;
+		for (; i < end; i++) {
+			char c = value.charAt(i);
+			if (c < '0' || c > '9')
+				throw new NumberFormatException("JPCTBlend error: not an int: "
+						+ value.subSequence(start, end));
+			result = result * 10 + (c - '0');
+		}
+		return negative ? -result : result;
+	}
+}
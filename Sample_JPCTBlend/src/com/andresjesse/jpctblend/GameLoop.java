@@ -0,0 +1,141 @@
+package com.andresjesse.jpctblend;
+
+/**
+ * Game Loop helper, runs the simulation at a fixed step whatever the frame
+ * rate. Each frame, the real time elapsed since the last frame is accumulated
+ * and consumed in fixed steps; at most maxSteps are run per frame (the rest
+ * is dropped, so a long hitch does not freeze the game while it catches up).
+ * The time left in the accumulator gives the interpolation alpha, to render
+ * between the last two simulation states. The per frame work of the scene
+ * (streaming, culling, lights, incremental add/remove) runs once per rendered
+ * frame, whatever the number of steps. Usage:
+ * 
+ * <pre>
+ * GameLoop loop = new GameLoop(1 / 30f, 5);
+ * while (running) {
+ * 	loop.update(scene); // scene.frame(), then scene.simulate(step) per step
+ * 	// render, interpolating with loop.getAlpha() if needed
+ * }
+ * </pre>
+ * 
+ * @author andres
+ * 
+ */
+public class GameLoop {
+	private float step;
+	private int maxSteps;
+
+	// simulation time (s) not consumed yet, always less than a step
+	private double accumulator = 0;
+
+	// System.nanoTime() of the last frame (0 = no frame yet)
+	private long lastTime = 0;
+
+	private float alpha = 0;
+
+	// steps run in the last frame, and total simulation time dropped (s)
+	private int frameSteps = 0;
+	private double droppedTime = 0;
+
+	/**
+	 * @param step
+	 *            simulation step (s), e.g. 1 / 30f for 30 Hz
+	 * @param maxSteps
+	 *            max simulation steps per frame
+	 */
+	public GameLoop(float step, int maxSteps) {
+		if (step <= 0 || maxSteps < 1)
+			throw new RuntimeException(
+					"JPCTBlend error: invalid game loop step!");
+
+		this.step = step;
+		this.maxSteps = maxSteps;
+	}
+
+	/**
+	 * Starts a frame: accumulates the real time elapsed since the last frame.
+	 * 
+	 * @return simulation steps to run in this frame
+	 */
+	public int advance() {
+		long now = System.nanoTime();
+		double frameTime = lastTime == 0 ? 0 : (now - lastTime) / 1000000000d;
+		lastTime = now;
+
+		return advance(frameTime);
+	}
+
+	/**
+	 * Starts a frame of a given duration.
+	 * 
+	 * @param frameTime
+	 *            frame duration (s)
+	 * @return simulation steps to run in this frame
+	 */
+	public int advance(double frameTime) {
+		accumulator += frameTime;
+
+		int steps = (int) (accumulator / step);
+		if (steps > maxSteps) {
+			droppedTime += (steps - maxSteps) * (double) step;
+			steps = maxSteps;
+		}
+
+		accumulator -= steps * (double) step;
+		if (accumulator >= step)
+			accumulator %= step;
+
+		alpha = (float) (accumulator / step);
+		frameSteps = steps;
+
+		return steps;
+	}
+
+	/**
+	 * Starts a frame: does the per frame work of the scene, then simulates it
+	 * once per simulation step.
+	 * 
+	 * @param scene
+	 *            scene to update
+	 */
+	public void update(JPCTBlendScene scene) {
+		int steps = advance();
+
+		scene.frame();
+		for (int i = 0; i < steps; i++)
+			scene.simulate(step);
+	}
+
+	/**
+	 * @return simulation step (s)
+	 */
+	public float getStep() {
+		return step;
+	}
+
+	public int getMaxSteps() {
+		return maxSteps;
+	}
+
+	/**
+	 * @return interpolation factor (0..1) between the previous and the
+	 *         current simulation state, for rendering
+	 */
+	public float getAlpha() {
+		return alpha;
+	}
+
+	/**
+	 * @return simulation steps run in the last frame
+	 */
+	public int getFrameSteps() {
+		return frameSteps;
+	}
+
+	/**
+	 * @return total simulation time dropped by the catch-up cap (s)
+	 */
+	public double getDroppedTime() {
+		return droppedTime;
+	}
+}
@@ -0,0 +1,21 @@
+package com.andresjesse.jpctblend;
+
+/**
+ * Actor Provider Interface, registers actor builders in the
+ * {@link ActorFactory}. Providers are found once through
+ * {@link java.util.ServiceLoader}: list your provider class in
+ * "META-INF/services/com.andresjesse.jpctblend.IActorProvider" (see
+ * {@link com.andresjesse.jpctblend.actors.SampleActorProvider}).
+ * 
+ * @author andres
+ * 
+ */
+public interface IActorProvider {
+	/**
+	 * Register here a builder for each of your actor classes.
+	 * 
+	 * @param factory
+	 *            the actor factory
+	 */
+	public void registerActors(ActorFactory factory);
+}
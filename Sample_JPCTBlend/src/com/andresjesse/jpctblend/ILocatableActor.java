@@ -0,0 +1,19 @@
+package com.andresjesse.jpctblend;
+
+import com.threed.jpct.SimpleVector;
+
+/**
+ * Locatable Actor Interface, for actors that move. Actor tiers (see
+ * {@link ActorLod}) place actors by the position given by JPCTBlend when the
+ * scene was loaded; locatable actors are placed again by their current
+ * position each time they act.
+ * 
+ * @author andres
+ * 
+ */
+public interface ILocatableActor extends IActor {
+	/**
+	 * @return current actor position
+	 */
+	public SimpleVector getPosition();
+}
@@ -0,0 +1,27 @@
+package com.andresjesse.jpctblend;
+
+/**
+ * Parallel Actor Interface. Actors implementing this act in parallel (see
+ * {@link SceneLoadOptions#setActorThreads(int)}): all of them act at the same
+ * time on worker threads (read phase), then the changes they recorded are
+ * applied by the rendering thread, one actor after the other, in the scene
+ * order (commit phase).
+ * 
+ * @author andres
+ * 
+ */
+public interface IParallelActor extends IActor {
+	/**
+	 * Create here your behavior. This is called from a worker thread, at the
+	 * same time as other actors: read whatever you need, but do not change the
+	 * world or any Object3D here, record the changes in the command buffer
+	 * instead. JPCTBlend does not call {@link IActor#act()} for parallel
+	 * actors.
+	 * 
+	 * @param commands
+	 *            this actor command buffer (empty at each frame)
+	 * @param dt
+	 *            seconds since the last act (see {@link ITimedActor})
+	 */
+	public void act(ActorCommandBuffer commands, float dt);
+}
@@ -0,0 +1,26 @@
+package com.andresjesse.jpctblend;
+
+/**
+ * Poolable Actor Interface. With actor pooling (see
+ * {@link SceneLoadOptions#setActorPooling(boolean)}) removed scenes give their
+ * poolable actors back to the {@link ActorPool}, and loaded scenes take them
+ * from there instead of creating new ones. JPCTBlend calls
+ * {@link IActor#setPosition} and {@link IActor#setRotation} again after
+ * {@link #reinitialize()}.
+ * 
+ * @author andres
+ * 
+ */
+public interface IPoolableActor extends IActor {
+	/**
+	 * Called when the actor goes back to the pool (already removed from the
+	 * world): drop here any state of the last scene.
+	 */
+	public void reset();
+
+	/**
+	 * Called when the actor is taken from the pool, before it is placed and
+	 * added to a scene.
+	 */
+	public void reinitialize();
+}
@@ -0,0 +1,24 @@
+package com.andresjesse.jpctblend;
+
+/**
+ * Scene Load Listener, implement this to follow the loading of a scene (e.g.
+ * to animate a loading screen). See {@link SceneLoadOptions#setLoadListener}.
+ * 
+ * @author andres
+ * 
+ */
+public interface ISceneLoadListener {
+	/**
+	 * Called each time some work of a loading phase is done. Note that this is
+	 * called from the loading thread, which is not the rendering thread when
+	 * the scene is loaded by {@link JPCTBlendScene#loadAsync}.
+	 * 
+	 * @param phase
+	 *            current phase
+	 * @param done
+	 *            items done in this phase
+	 * @param total
+	 *            items of this phase
+	 */
+	public void onProgress(LoadPhase phase, int done, int total);
+}
@@ -0,0 +1,62 @@
+package com.andresjesse.jpctblend;
+
+/**
+ * Scene Stats Listener, implement this to get the load measures of a scene
+ * as they are taken (e.g. to send them to a profiler). The same measures are
+ * kept by {@link SceneLoadStats}. See
+ * {@link SceneLoadOptions#setStatsListener}.
+ * 
+ * Methods are called from the thread doing the work: the loading thread for
+ * phases, texture/mesh loader threads for assets. Started and finished calls
+ * of the same phase or asset come from the same thread.
+ * 
+ * @author andres
+ * 
+ */
+public interface ISceneStatsListener {
+	/**
+	 * A phase (or a part of it, e.g. one frame of an incremental
+	 * {@link LoadPhase#ADD_TO_WORLD}) starts.
+	 */
+	public void onPhaseStarted(LoadPhase phase);
+
+	/**
+	 * @param phase
+	 *            the phase started by the last
+	 *            {@link #onPhaseStarted(LoadPhase)} of this thread
+	 * @param wallTime
+	 *            elapsed time (ns)
+	 * @param cpuTime
+	 *            CPU time of this thread (ns, 0 if not supported)
+	 */
+	public void onPhaseFinished(LoadPhase phase, long wallTime, long cpuTime);
+
+	/**
+	 * An asset (scene file, texture or mesh) starts loading.
+	 * 
+	 * @param phase
+	 *            phase of the asset (PARSE for the scene file, TEXTURES or
+	 *            INSTANCES for meshs)
+	 * @param name
+	 *            file name
+	 */
+	public void onAssetStarted(LoadPhase phase, String name);
+
+	/**
+	 * @param phase
+	 *            phase of the asset
+	 * @param name
+	 *            file name
+	 * @param bytes
+	 *            bytes read (0 if cached)
+	 * @param wallTime
+	 *            elapsed time (ns)
+	 * @param cpuTime
+	 *            CPU time of this thread (ns, 0 if not supported)
+	 * @param cached
+	 *            true if the asset was already loaded (or being loaded), so
+	 *            nothing was read
+	 */
+	public void onAssetFinished(LoadPhase phase, String name, long bytes,
+			long wallTime, long cpuTime, boolean cached);
+}
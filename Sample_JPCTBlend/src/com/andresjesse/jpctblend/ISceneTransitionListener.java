@@ -0,0 +1,32 @@
+package com.andresjesse.jpctblend;
+
+/**
+ * Scene Transition Listener, notified when a scene has been completely added
+ * to (or removed from) the world. See
+ * {@link SceneLoadOptions#setTransitionListener}.
+ * 
+ * @author andres
+ * 
+ */
+public interface ISceneTransitionListener {
+	/**
+	 * Called (from the rendering thread) when the scene is in the world.
+	 * 
+	 * @param scene
+	 *            the added scene
+	 * @param frames
+	 *            frames the transition took (0 if it was not incremental)
+	 */
+	public void onSceneAdded(JPCTBlendScene scene, int frames);
+
+	/**
+	 * Called (from the rendering thread) when the scene is out of the world,
+	 * and its meshs and textures were released.
+	 * 
+	 * @param scene
+	 *            the removed scene
+	 * @param frames
+	 *            frames the transition took (0 if it was not incremental)
+	 */
+	public void onSceneRemoved(JPCTBlendScene scene, int frames);
+}
@@ -0,0 +1,41 @@
+package com.andresjesse.jpctblend;
+
+/**
+ * Scene Update Listener, implement this to measure the scene updates (e.g.
+ * to send them to a profiler). See
+ * {@link SceneLoadOptions#setUpdateListener(ISceneUpdateListener)}.
+ *
+ * @author andres
+ *
+ */
+public interface ISceneUpdateListener {
+	/**
+	 * A call to {@link JPCTBlendScene#update(float)},
+	 * {@link JPCTBlendScene#frame()} or
+	 * {@link JPCTBlendScene#simulate(float)} starts (rendering thread).
+	 */
+	public void onUpdateStarted();
+
+	/**
+	 * An actor took longer than the
+	 * {@link SceneLoadOptions#getActTimeThreshold() act time threshold} to
+	 * act. Called from the thread it acted on: worker threads for
+	 * {@link IParallelActor}s, so this must be thread safe.
+	 *
+	 * @param actor
+	 *            the actor
+	 * @param actTime
+	 *            act() time (ns)
+	 */
+	public void onActorActed(IActor actor, long actTime);
+
+	/**
+	 * The update started by the last {@link #onUpdateStarted()} is done.
+	 *
+	 * @param updateTime
+	 *            update time (ns)
+	 * @param actedActors
+	 *            actors that acted (0 while the scene is being added/removed)
+	 */
+	public void onUpdateFinished(long updateTime, int actedActors);
+}
@@ -0,0 +1,22 @@
+package com.andresjesse.jpctblend;
+
+/**
+ * Timed Actor Interface. Timed actors are told how much (simulation) time
+ * passed since their last act, so they behave the same whatever the frame
+ * rate (see {@link GameLoop}) and when they do not act at every frame (see
+ * {@link SceneLoadOptions#setActorTiers(float[], int[])}). JPCTBlend does
+ * not call {@link IActor#act()} for timed actors.
+ * 
+ * @author andres
+ * 
+ */
+public interface ITimedActor extends IActor {
+	/**
+	 * Create here your behavior, scaled by the elapsed time.
+	 * 
+	 * @param dt
+	 *            simulation seconds since the last act (the scene update
+	 *            step the first time)
+	 */
+	public void act(float dt);
+}
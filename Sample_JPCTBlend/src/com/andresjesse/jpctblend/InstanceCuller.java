@@ -0,0 +1,254 @@
+package com.andresjesse.jpctblend;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import com.threed.jpct.Camera;
+import com.threed.jpct.Object3D;
+import com.threed.jpct.SimpleVector;
+
+/**
+ * Instance Culler, hides the static objects of a scene that can't be seen,
+ * so JPCT does not have to cull them one by one at each frame. Objects are
+ * grouped (by the center of their bounding sphere) into a grid of square
+ * cells on the XZ plane, and each cell gets a sphere enclosing its objects.
+ *
+ * A cell is visible when its sphere is closer to the camera than the cull
+ * distance and (with frustum culling) touches the view cone. Only the cells
+ * around the camera are checked, plus the ones visible before, and objects
+ * are shown/hidden only when their cell changes, so the work per frame
+ * depends on the cells near the camera, not on the size of the scene. Nothing
+ * is checked while the camera does not move. See
+ * {@link SceneLoadOptions#setCullDistance(float)}.
+ *
+ * @author andres
+ *
+ */
+public class InstanceCuller {
+
+	/**
+	 * A cell of the grid: its objects and bounding sphere.
+	 */
+	private static class CullCell {
+		final ArrayList<Object3D> objects = new ArrayList<Object3D>();
+
+		// bounding sphere (enclosing the spheres of the objects)
+		final SimpleVector center = new SimpleVector();
+		float radius;
+
+		boolean visible = true;
+
+		// last check that found it visible
+		int checked = -1;
+	}
+
+	private float cellSize;
+	private float cullDistance;
+	private boolean frustumCulling;
+
+	private HashMap<Long, CullCell> cells = new HashMap<Long, CullCell>();
+
+	// biggest cell radius (cells this far from the camera cell may be seen)
+	private float maxCellRadius = 0;
+
+	// visible cells, and the list being built by the current check
+	private ArrayList<CullCell> visibleCells = new ArrayList<CullCell>();
+	private ArrayList<CullCell> nextVisibleCells = new ArrayList<CullCell>();
+	private int check = 0;
+
+	private int visibleObjects;
+	private int objectCount;
+
+	// camera position and direction (filled at each update)
+	private SimpleVector position = new SimpleVector();
+	private SimpleVector direction = new SimpleVector();
+
+	// camera of the last check
+	private SimpleVector lastPosition = new SimpleVector();
+	private SimpleVector lastDirection = new SimpleVector();
+	private float fov;
+	private float yFov;
+	private boolean checkedOnce = false;
+
+	/**
+	 * Builds the grid. Objects must be placed (translation and rotation).
+	 *
+	 * @param objects
+	 *            scene objects (instances or batches), all visible
+	 * @param options
+	 *            cull distance, cell size and frustum culling
+	 */
+	InstanceCuller(List<Object3D> objects, SceneLoadOptions options) {
+		cellSize = options.getCullCellSize();
+		cullDistance = options.getCullDistance();
+		frustumCulling = options.isFrustumCulling();
+
+		// bounding sphere of each object
+		SimpleVector[] centers = new SimpleVector[objects.size()];
+		float[] radiuses = new float[objects.size()];
+
+		for (int i = 0; i < objects.size(); i++) {
+			Object3D obj = objects.get(i);
+			float[] box = obj.getMesh().getBoundingBox();
+
+			SimpleVector center = new SimpleVector((box[0] + box[1]) / 2,
+					(box[2] + box[3]) / 2, (box[4] + box[5]) / 2);
+			center.matMul(obj.getRotationMatrix());
+			center.add(obj.getTranslation());
+
+			float dx = box[1] - box[0];
+			float dy = box[3] - box[2];
+			float dz = box[5] - box[4];
+
+			centers[i] = center;
+			radiuses[i] = (float) Math.sqrt(dx * dx + dy * dy + dz * dz) / 2;
+
+			int x = (int) Math.floor(center.x / cellSize);
+			int z = (int) Math.floor(center.z / cellSize);
+			CullCell cell = cells.get(SceneCell.key(x, z));
+			if (cell == null) {
+				cell = new CullCell();
+				cells.put(SceneCell.key(x, z), cell);
+			}
+			cell.objects.add(obj);
+			// accumulated, averaged below
+			cell.center.add(center);
+		}
+
+		for (CullCell cell : cells.values()) {
+			cell.center.scalarMul(1f / cell.objects.size());
+			visibleCells.add(cell);
+		}
+
+		for (int i = 0; i < objects.size(); i++) {
+			CullCell cell = cells.get(SceneCell.key(
+					(int) Math.floor(centers[i].x / cellSize),
+					(int) Math.floor(centers[i].z / cellSize)));
+			cell.radius = Math.max(cell.radius,
+					cell.center.distance(centers[i]) + radiuses[i]);
+			maxCellRadius = Math.max(maxCellRadius, cell.radius);
+		}
+
+		objectCount = objects.size();
+		visibleObjects = objectCount;
+	}
+
+	/**
+	 * Shows/hides cells for the current camera (nothing is done if the camera
+	 * did not move). Call it from the rendering thread.
+	 *
+	 * @param camera
+	 *            world camera
+	 */
+	void update(Camera camera) {
+		SimpleVector pos = camera.getPosition(position);
+		SimpleVector dir = camera.getDirection(direction);
+
+		if (checkedOnce && pos.equals(lastPosition)
+				&& dir.equals(lastDirection) && camera.getFOV() == fov
+				&& camera.getYFOV() == yFov)
+			return;
+
+		checkedOnce = true;
+		lastPosition.set(pos);
+		lastDirection.set(dir);
+		fov = camera.getFOV();
+		yFov = camera.getYFOV();
+
+		// view cone enclosing the frustum (without a y fov, the vertical
+		// angle is taken as wide as the horizontal one)
+		float tanX = fov / 2;
+		float tanY = yFov > 0 ? yFov / 2 : tanX;
+		float coneAngle = (float) Math.atan(Math.sqrt(tanX * tanX + tanY
+				* tanY));
+
+		check++;
+		nextVisibleCells.clear();
+
+		// cells farther than this can't be visible
+		float reach = cullDistance + maxCellRadius;
+		int fromX = (int) Math.floor((pos.x - reach) / cellSize);
+		int toX = (int) Math.floor((pos.x + reach) / cellSize);
+		int fromZ = (int) Math.floor((pos.z - reach) / cellSize);
+		int toZ = (int) Math.floor((pos.z + reach) / cellSize);
+
+		for (int x = fromX; x <= toX; x++) {
+			for (int z = fromZ; z <= toZ; z++) {
+				CullCell cell = cells.get(SceneCell.key(x, z));
+				if (cell == null || !isVisible(cell, pos, dir, coneAngle))
+					continue;
+
+				cell.checked = check;
+				nextVisibleCells.add(cell);
+				if (!cell.visible)
+					setVisible(cell, true);
+			}
+		}
+
+		// visible before, not anymore
+		for (int i = 0; i < visibleCells.size(); i++) {
+			CullCell cell = visibleCells.get(i);
+			if (cell.checked != check && cell.visible)
+				setVisible(cell, false);
+		}
+
+		ArrayList<CullCell> swap = visibleCells;
+		visibleCells = nextVisibleCells;
+		nextVisibleCells = swap;
+	}
+
+	private boolean isVisible(CullCell cell, SimpleVector pos,
+			SimpleVector dir, float coneAngle) {
+		float dx = cell.center.x - pos.x;
+		float dy = cell.center.y - pos.y;
+		float dz = cell.center.z - pos.z;
+		float distance = (float) Math.sqrt(dx * dx + dy * dy + dz * dz);
+
+		if (distance - cell.radius > cullDistance)
+			return false;
+
+		// camera inside the cell sphere
+		if (!frustumCulling || distance <= cell.radius)
+			return true;
+
+		float cos = (dx * dir.x + dy * dir.y + dz * dir.z)
+				/ (distance * dir.length());
+		float angle = (float) Math.acos(Math.max(-1, Math.min(1, cos)));
+
+		return angle - Math.asin(cell.radius / distance) <= coneAngle;
+	}
+
+	private void setVisible(CullCell cell, boolean visible) {
+		cell.visible = visible;
+		for (int i = 0; i < cell.objects.size(); i++)
+			cell.objects.get(i).setVisibility(visible);
+
+		visibleObjects += visible ? cell.objects.size() : -cell.objects.size();
+	}
+
+	/**
+	 * @return objects shown by the last check
+	 */
+	public int getVisibleCount() {
+		return visibleObjects;
+	}
+
+	/**
+	 * @return objects hidden by the last check
+	 */
+	public int getCulledCount() {
+		return objectCount - visibleObjects;
+	}
+
+	/**
+	 * @return cells shown by the last check
+	 */
+	public int getVisibleCellCount() {
+		return visibleCells.size();
+	}
+
+	public int getCellCount() {
+		return cells.size();
+	}
+}
@@ -0,0 +1,67 @@
+package com.andresjesse.jpctblend;
+
+import com.threed.jpct.SimpleVector;
+
+/**
+ * Instance Info, used to store a parsed (blender) instance. Instances are
+ * loaded from this data, so it stays available to the gameplay.
+ * 
+ * @author andres
+ * 
+ */
+public class InstanceInfo {
+	private String meshFile;
+	private String texture;
+	private SimpleVector position;
+	private SimpleVector rotation;
+	private SimpleVector scale;
+
+	public InstanceInfo(String meshFile, String texture, SimpleVector position,
+			SimpleVector rotation, SimpleVector scale) {
+		this.meshFile = meshFile;
+		this.texture = texture;
+		this.position = position;
+		this.rotation = rotation;
+		this.scale = scale;
+	}
+
+	public String getMeshFile() {
+		return meshFile;
+	}
+
+	public String getTexture() {
+		return texture;
+	}
+
+	public SimpleVector getPosition() {
+		return position;
+	}
+
+	public SimpleVector getRotation() {
+		return rotation;
+	}
+
+	public SimpleVector getScale() {
+		return scale;
+	}
+
+	public void setMeshFile(String meshFile) {
+		this.meshFile = meshFile;
+	}
+
+	public void setTexture(String texture) {
+		this.texture = texture;
+	}
+
+	public void setPosition(SimpleVector position) {
+		this.position = position;
+	}
+
+	public void setRotation(SimpleVector rotation) {
+		this.rotation = rotation;
+	}
+
+	public void setScale(SimpleVector scale) {
+		this.scale = scale;
+	}
+}
@@ -0,0 +1,75 @@
+package com.andresjesse.jpctblend;
+
+/**
+ * JPCTBlend Log, levelled console output of the importer (like the JPCT
+ * Logger, but apart from it). Messages go to System.out, errors (with their
+ * stack trace) to System.err. Use {@link #setLevel(int)} to make JPCTBlend
+ * quieter (or silent) or more verbose.
+ * 
+ * @author andres
+ * 
+ */
+public final class JPCTBlendLog {
+
+	/** Nothing is printed. */
+	public static final int LL_OFF = 0;
+	/** Errors only. */
+	public static final int LL_ERRORS = 1;
+	/** Errors and a summary of each loaded scene (default). */
+	public static final int LL_INFO = 2;
+	/** Everything, including the load time of each asset. */
+	public static final int LL_DEBUG = 3;
+
+	private static volatile int level = LL_INFO;
+
+	private JPCTBlendLog() {
+	}
+
+	public static int getLevel() {
+		return level;
+	}
+
+	/**
+	 * @param level
+	 *            one of the LL_ constants
+	 */
+	public static void setLevel(int level) {
+		JPCTBlendLog.level = level;
+	}
+
+	/**
+	 * @return true if messages of a level are printed (to skip building
+	 *         messages no one will see)
+	 */
+	public static boolean isEnabled(int messageLevel) {
+		return level >= messageLevel;
+	}
+
+	public static void error(String message) {
+		error(message, null);
+	}
+
+	/**
+	 * @param message
+	 *            what went wrong
+	 * @param cause
+	 *            exception (its stack trace is printed too), or null
+	 */
+	public static void error(String message, Throwable cause) {
+		if (level >= LL_ERRORS) {
+			System.err.println("JPCTBlend error: " + message);
+			if (cause != null)
+				cause.printStackTrace();
+		}
+	}
+
+	public static void info(String message) {
+		if (level >= LL_INFO)
+			System.out.println("JPCTBlend: " + message);
+	}
+
+	public static void debug(String message) {
+		if (level >= LL_DEBUG)
+			System.out.println("JPCTBlend: " + message);
+	}
+}
@@ -1,15 +1,36 @@
 package com.andresjesse.jpctblend;
 
+import java.io.BufferedInputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 
 import org.w3c.dom.Document;
 import org.w3c.dom.NamedNodeMap;
@@ -17,7 +38,7 @@ import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 import org.xml.sax.SAXException;
 
-import com.threed.jpct.Loader;
+import com.threed.jpct.FrameBuffer;
 import com.threed.jpct.Object3D;
 import com.threed.jpct.SimpleVector;
 import com.threed.jpct.Texture;
@@ -33,7 +54,7 @@ import com.threed.jpct.util.Light;
  * 
  */
 public class JPCTBlendScene {
-	private static final int IMPORTER_VERSION = 2;
+	static final int IMPORTER_VERSION = 2;
 
 	private boolean active = false;
 	
@@ -42,73 +63,479 @@ public class JPCTBlendScene {
 	//need to find a better solution for this..
 	private boolean pivotsFixed = false;
 
+	private SceneLoadOptions options;
+
 	// Scene path (contains scene xml's, "textures" and "meshs" subfolders)
 	private String sceneBasePath;
 
+	// attributes of the element being parsed (reused for every element), and
+	// the mesh file of each mesh name
+	private ElementAttributes attrs = new ElementAttributes();
+	private HashMap<String, String> meshFiles = new HashMap<String, String>();
+
 	// Data loaded from XML
 	private ExporterInfo exporterInfo;
 	private ArrayList<String> textures;
+	private ArrayList<InstanceInfo> instanceInfos;
 	private ArrayList<Object3D> instances;
-	private ArrayList<Light> lights;
+	// texture of each object in instances
+	private ArrayList<String> instanceTextures;
+	// index (in instances) of the object of each instance info
+	private int[] instanceObjects;
+	private ArrayList<LightInfo> lightInfos;
 	private ArrayList<CameraInfo> cameras;
+	private ArrayList<ActorInfo> actorInfos;
 	private ArrayList<IActor> actors;
 	private SimpleVector ambientLight;
 
+	// jpct lights, created when the scene is added to the world (null while
+	// the scene is not in the world)
+	private ArrayList<Light> lights;
+
+	// textures decoded by the loading thread, waiting to be added to the
+	// TextureManager by addSceneToWorld()
+	private Map<String, Texture> decodedTextures = new HashMap<String, Texture>();
+
+	// instances textures are set once, and again if they are reloaded
+	private boolean texturesApplied = false;
+
+	// texture name -> decode time (ms)
+	private Map<String, Long> textureDecodeTimes = new ConcurrentHashMap<String, Long>();
+
 	// Scene World
 	private World world;
 
+	// keys (paths) of the distinct meshs used by instances, and the ones this
+	// scene is holding a reference to in the Object3DManager (null if
+	// released)
+	private ArrayList<String> meshKeys;
+	private ArrayList<String> retainedMeshKeys;
+
+	// textures this scene is holding a reference to in the
+	// SceneTextureManager (null if released)
+	private ArrayList<String> retainedTextures;
+
+	// mesh loading pool, only alive while loading
+	private ExecutorService meshPool;
+
+	// incremental add/remove (see SceneLoadOptions.setFrameBudget): next unit
+	// of work (-1 = no transition), its direction and frames spent so far
+	private int transitionStep = -1;
+	private boolean adding;
+	private int transitionFrames;
+	private int addFrames;
+	private int removeFrames;
+
+	// FrameBuffer to unload textures with, once the scene is removed
+	private FrameBuffer unloadFrameBuffer;
+
+	// loads instances around the camera (null = all instances are loaded)
+	private CellStreamer cellStreamer;
+
+	// updates the actors (read and commit phases)
+	private ActorScheduler actorScheduler;
+
+	// chooses the actors acting at each frame (null = all of them)
+	private ActorLod actorLod;
+	private int[] dueActors;
+
+	// chooses the lights lit at each frame (null = all of them), and the
+	// camera position given to it
+	private LightManager lightManager;
+	private SimpleVector cameraPosition = new SimpleVector();
+
+	// hides the objects out of view (null = no culling)
+	private InstanceCuller instanceCuller;
+
+	// parsed info of each actor (same order as actors)
+	private ArrayList<ActorInfo> actorSources;
+
+	// poolable actors were given back to the ActorPool
+	private boolean actorsPooled = false;
+
+	// actor resources this scene is using (null when removed)
+	private ActorResources actorResources;
+
+	// simulation time (s) and System.nanoTime() of the last update()
+	private double simulationTime = 0;
+	private long lastUpdateTime = 0;
+
+	// static batching time (ms)
+	private long batchTime = 0;
+
+	// mesh -> estimated bytes saved by sharing it between instances
+	private Map<String, Long> instancingSavings = new LinkedHashMap<String, Long>();
+
+	// update histograms (null = not kept), and pivot fix-up time (ns) of the
+	// current update (-1 = pivots not fixed)
+	private SceneUpdateStats updateStats;
+	private long pivotTime;
+
+	// load measures, and System.nanoTime() / cpu time at the start of the
+	// phase being timed
+	private SceneLoadStats loadStats;
+	private long phaseWallStart;
+	private long phaseCpuStart;
+
+	// meshs this scene started loading in background (their loads, or cache
+	// hits, are recorded once, by requestMesh)
+	private HashSet<String> prefetchedMeshs = new HashSet<String>();
+
+	// keys of the prefetched meshs not acquired yet (kept by the
+	// Object3DManager until acquired, or cancelled if the load fails)
+	private HashSet<String> pinnedMeshs = new HashSet<String>();
+
 	/**
 	 * JPCTScene constructor, loads an scene based on the main xml file
-	 * (exported by blender)
+	 * (exported by blender). Files with the {@link CompiledScene#FILE_EXTENSION}
+	 * extension (created by {@link SceneCompiler}) are loaded through the
+	 * compiled loader instead.
 	 * 
 	 * @param sceneFilename
-	 *            scene xml filename
+	 *            scene xml (or compiled scene) filename
 	 */
 	public JPCTBlendScene(String sceneFilename, World world) {
+		this(sceneFilename, world, new SceneLoadOptions());
+	}
+
+	/**
+	 * JPCTScene constructor, loads an scene using the given load options.
+	 * 
+	 * @param sceneFilename
+	 *            scene xml (or compiled scene) filename
+	 * @param options
+	 *            how the scene is loaded
+	 */
+	public JPCTBlendScene(String sceneFilename, World world,
+			SceneLoadOptions options) {
+		this(sceneFilename, world, options, true);
+	}
+
+	/**
+	 * Loads an scene in background. Parsing, texture decoding, mesh loading
+	 * and actors creation run on a loader thread; the returned future
+	 * completes with a scene that is not in the world yet: call
+	 * {@link #addSceneToWorld()} from the rendering thread (e.g. once
+	 * {@link Future#isDone()}), where textures are registered and lights are
+	 * created. Progress is reported to the
+	 * {@link SceneLoadOptions#getLoadListener() load listener}, if any.
+	 * Actors are created by the loader thread too, so their constructors should
+	 * not touch the world (use {@link IActor#addToWorld(World)}).
+	 * 
+	 * @param sceneFilename
+	 *            scene xml (or compiled scene) filename
+	 * @param options
+	 *            how the scene is loaded
+	 * @return the scene being loaded
+	 */
+	public static Future<JPCTBlendScene> loadAsync(final String sceneFilename,
+			final World world, final SceneLoadOptions options) {
+		FutureTask<JPCTBlendScene> task = new FutureTask<JPCTBlendScene>(
+				new Callable<JPCTBlendScene>() {
+					@Override
+					public JPCTBlendScene call() {
+						return new JPCTBlendScene(sceneFilename, world,
+								options, false);
+					}
+				});
+
+		Thread loader = new Thread(task, "JPCTBlend loader");
+		loader.setDaemon(true);
+		loader.start();
+
+		return task;
+	}
+
+	private JPCTBlendScene(String sceneFilename, World world,
+			SceneLoadOptions options, boolean addToWorld) {
 
 		this.world = world;
+		this.options = options;
+		this.loadStats = new SceneLoadStats(options.getStatsListener());
 
 		File file = new File(sceneFilename);
 		sceneBasePath = file.getParentFile().getAbsolutePath() + File.separator;
 
-		DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-		factory.setNamespaceAware(true);
-		DocumentBuilder builder;
-		Document doc = null;
+		// with cell streaming meshs are loaded by cells
+		if (options.getMeshThreads() > 1 && options.getViewRadius() <= 0)
+			meshPool = Executors.newFixedThreadPool(options.getMeshThreads());
 
 		try {
-			builder = factory.newDocumentBuilder();
-			doc = builder.parse(sceneFilename);
+			beginPhase(LoadPhase.PARSE);
+			loadStats.assetStarted(LoadPhase.PARSE, file.getName());
+
+			if (sceneFilename.endsWith(CompiledScene.FILE_EXTENSION)) {
+				try {
+					parseCompiled(CompiledScene.open(file));
+				} catch (IOException e) {
+					throw new RuntimeException("JPCTBlend error: can't open "
+							+ sceneFilename, e);
+				}
+			} else if (options.isStreaming()) {
+				parseStream(sceneFilename);
+			} else {
+				parseDocument(sceneFilename);
+			}
+
+			loadStats.assetFinished(LoadPhase.PARSE, file.getName(),
+					file.length(), System.nanoTime() - phaseWallStart,
+					SceneLoadStats.cpuTime() - phaseCpuStart);
+			endPhase(LoadPhase.PARSE);
+			reportProgress(LoadPhase.PARSE, 1, 1);
+
+			build();
+		} catch (RuntimeException e) {
+			releaseActorResources();
+			throw e;
+		} finally {
+			if (meshPool != null) {
+				meshPool.shutdown();
+				meshPool = null;
+			}
+
+			for (String key : pinnedMeshs)
+				Object3DManager.getInstance().cancelPrefetch(key);
+			pinnedMeshs.clear();
+		}
+
+		if (addToWorld)
+			addSceneToWorld();
+	}
+
+	/**
+	 * Builds everything that can be built away from the rendering thread:
+	 * decodes textures, loads meshs and creates instances and actors. Nothing
+	 * is added to the world (or to the TextureManager) here.
+	 */
+	private void build() {
+		retainActorResources();
+		prefetchActors(actorInfos);
+
+		beginPhase(LoadPhase.TEXTURES);
+		prepareTextures(textures);
+		endPhase(LoadPhase.TEXTURES);
+
+		// lights are just data until the scene is added to the world
+		beginPhase(LoadPhase.LIGHTS);
+		if (options.getMaxLights() > 0)
+			lightManager = new LightManager(lightInfos, options);
+		reportProgress(LoadPhase.LIGHTS, lightInfos.size(), lightInfos.size());
+		endPhase(LoadPhase.LIGHTS);
+
+		if (options.getViewRadius() > 0) {
+			// instances are created by the cell streamer, around the camera
+			beginPhase(LoadPhase.INSTANCES);
+			cellStreamer = new CellStreamer(world, sceneBasePath,
+					instanceInfos, options, loadStats);
+			instances = new ArrayList<Object3D>();
+			instanceTextures = new ArrayList<String>();
+			meshKeys = new ArrayList<String>();
+			retainedMeshKeys = new ArrayList<String>();
+			endPhase(LoadPhase.INSTANCES);
+		} else if (options.isBatching()) {
+			beginPhase(LoadPhase.BATCHES);
+			instances = createBatches(instanceInfos);
+			endPhase(LoadPhase.BATCHES);
+		} else {
+			beginPhase(LoadPhase.INSTANCES);
+			instances = createInstances(instanceInfos);
+			endPhase(LoadPhase.INSTANCES);
+		}
+
+		if (cellStreamer == null && options.getCullDistance() > 0)
+			instanceCuller = new InstanceCuller(instances, options);
+
+		beginPhase(LoadPhase.ACTORS);
+		actors = createActors(actorInfos);
+		actorScheduler = new ActorScheduler(options.getActorThreads());
+		actorScheduler.setActListener(options.getUpdateListener(),
+				options.getActTimeThreshold());
+
+		if (options.isUpdateStats()) {
+			updateStats = new SceneUpdateStats();
+			actorScheduler.keepActTimes();
+		}
+		dueActors = new int[actors.size()];
+
+		if (options.getActorTierDistances() != null) {
+			ArrayList<SimpleVector> positions = new ArrayList<SimpleVector>();
+			for (ActorInfo info : actorSources)
+				positions.add(info.getPosition());
+
+			actorLod = new ActorLod(positions, options);
+		}
+		endPhase(LoadPhase.ACTORS);
 
-			parseRoot(doc.getFirstChild());
+		printSummary();
+	}
+
+	/**
+	 * Parses the whole scene xml as a DOM document.
+	 * 
+	 * @param sceneFilename
+	 *            scene xml filename
+	 * @throws RuntimeException
+	 *             if the file can't be read or is malformed
+	 */
+	private void parseDocument(String sceneFilename) {
+		Document doc = readDocument(sceneFilename);
+		parseRoot(doc.getFirstChild());
+	}
+
+	/**
+	 * Reads a scene xml into a DOM document. The parse* methods below read
+	 * the sections of this document (package-private for the benchmarks).
+	 * 
+	 * @param sceneFilename
+	 *            scene xml filename
+	 * @return the document
+	 * @throws RuntimeException
+	 *             if the file can't be read or is malformed
+	 */
+	static Document readDocument(String sceneFilename) {
+		DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+		factory.setNamespaceAware(true);
 
+		try {
+			DocumentBuilder builder = factory.newDocumentBuilder();
+			return builder.parse(sceneFilename);
 		} catch (ParserConfigurationException | SAXException | IOException e) {
-			e.printStackTrace();
+			throw new RuntimeException("JPCTBlend error: can't read "
+					+ sceneFilename, e);
 		}
+	}
+
+	/**
+	 * Parses the scene xml with a streaming (StAX) parser. Each element is
+	 * dispatched as soon as it is read, so the document is never kept in
+	 * memory and meshs start loading while the rest of the file is still being
+	 * parsed. Builds exactly the same scene as {@link #parseDocument(String)}.
+	 * 
+	 * @param sceneFilename
+	 *            scene xml filename
+	 * @throws RuntimeException
+	 *             if the file can't be read or is malformed (even partway
+	 *             through)
+	 */
+	private void parseStream(String sceneFilename) {
+		textures = new ArrayList<String>();
+		lightInfos = new ArrayList<LightInfo>();
+		instanceInfos = new ArrayList<InstanceInfo>();
+		cameras = new ArrayList<CameraInfo>();
+		actorInfos = new ArrayList<ActorInfo>();
+
+		InputStream is = null;
+		XMLStreamReader reader = null;
+
+		try {
+			is = new BufferedInputStream(new FileInputStream(sceneFilename));
+			reader = XMLInputFactory.newInstance().createXMLStreamReader(is);
+
+			// direct childs of the root are sections (textures, lights..)
+			String section = null;
+			int depth = 0;
+
+			while (reader.hasNext()) {
+				int event = reader.next();
+
+				if (event == XMLStreamConstants.END_ELEMENT) {
+					depth--;
+					continue;
+				}
+
+				if (event != XMLStreamConstants.START_ELEMENT)
+					continue;
+
+				depth++;
+				String name = reader.getLocalName();
+
+				if (depth == 2) {
+					section = name;
+
+					if (name.equals("exporter_info")) {
+						exporterInfo = decodeExporterInfo(attrs.set(reader));
+						checkVersion();
+					} else if (name.equals("camera")) {
+						cameras.add(decodeCamera(attrs.set(reader)));
+					}
+				} else if (depth == 3) {
+					if (section.equals("textures")) {
+						textures.add(name);
+					} else if (section.equals("instances")
+							&& name.equals("instance")) {
+						InstanceInfo info = decodeInstance(attrs.set(reader));
+
+						requestMesh(info.getMeshFile());
+						instanceInfos.add(info);
+					} else if (section.equals("lights")
+							&& name.equals("pointlight")) {
+						lightInfos.add(decodeLight(attrs.set(reader)));
+					} else if (section.equals("lights")
+							&& name.equals("ambient")) {
+						ambientLight = attrs.set(reader).getVector("rgbcolor",
+								null);
+					} else if (section.equals("actors")
+							&& name.equals("actor")) {
+						actorInfos.add(decodeActor(attrs.set(reader)));
+					}
+				}
+			}
 
-		addSceneToWorld();
+		} catch (XMLStreamException | IOException e) {
+			// a partial scene is not loaded, as with the DOM parser
+			throw new RuntimeException("JPCTBlend error: can't read "
+					+ sceneFilename, e);
+		} finally {
+			try {
+				if (reader != null)
+					reader.close();
+				if (is != null)
+					is.close();
+			} catch (XMLStreamException | IOException e) {
+				JPCTBlendLog.error("can't close " + sceneFilename, e);
+			}
+		}
 	}
 
 	/**
-	 * Adds everything to the world.
+	 * Adds everything to the world. Textures decoded while loading are added
+	 * to the TextureManager here and lights are created, so call it from the
+	 * rendering thread. With a {@link SceneLoadOptions#getFrameBudget() frame
+	 * budget}, instances, actors and lights are added by the next calls to
+	 * {@link #update()} (or {@link #frame()}), a few per frame.
 	 */
 	public void addSceneToWorld() {
 		if (active)
 			throw new RuntimeException(
 					"Cannot load Scene! it  already has been loaded!");
+		checkNoTransition();
 
-		for (Object3D instance : instances) {
-			world.addObject(instance);
-		}
+		beginPhase(LoadPhase.ADD_TO_WORLD);
 
-		for (IActor actor : actors) {
-			actor.addToWorld(world);
+		// meshs released by removeSceneFromWorld: reference them again (the
+		// ones evicted meanwhile are still owned by the instances)
+		if (retainedMeshKeys == null) {
+			retainedMeshKeys = new ArrayList<String>();
+			for (String key : meshKeys)
+				if (Object3DManager.getInstance().retainObject3D(key))
+					retainedMeshKeys.add(key);
 		}
 
-		for (Light light : lights) {
-			light.enable();
+		// same for textures, but unloaded ones must be loaded again (and
+		// instances pointed to the new texture ids)
+		if (retainedTextures == null && loadTextures(textures))
+			texturesApplied = false;
+
+		if (!texturesApplied) {
+			for (int i = 0; i < instances.size(); i++)
+				instances.get(i).setTexture(instanceTextures.get(i));
+			texturesApplied = true;
 		}
 
+		if (ambientLight != null)
+			world.setAmbientLight((int) (ambientLight.x * 255),
+					(int) (ambientLight.y * 255), (int) (ambientLight.z * 255));
+
 		if (cameras.size() > 0) {
 			CameraInfo currentCameraInfo = cameras.get(0);// For now '0' is the
 															// default camera.
@@ -121,9 +548,38 @@ public class JPCTBlendScene {
 			world.getCamera().setFOV(0.914f);
 		}
 
+		retainActorResources();
+
+		// pooled actors were given back when the scene was removed (their
+		// slots were cleared), the new ones start without act history
+		if (actorsPooled) {
+			for (int i = 0; i < actors.size(); i++) {
+				if (actors.get(i) != null)
+					continue;
+
+				ActorInfo info = actorSources.get(i);
+				IActor actor = createActor(info);
+				if (actor == null)
+					throw new RuntimeException(
+							"JPCTBlend error: could not create actor "
+									+ info.getJavaClass() + " again!");
+
+				actors.set(i, actor);
+				actorScheduler.resetActor(i);
+				if (actorLod != null)
+					actorLod.place(i, info.getPosition());
+			}
+			actorsPooled = false;
+		}
+
+		lights = new ArrayList<Light>(getLightCount());
+
 		active = true;
+		startTransition(true);
+
+		endPhase(LoadPhase.ADD_TO_WORLD);
 	}
-	
+
 	/**
 	 * According to JPCT forum, the build() method resets pivots,
 	 * i don't know why this causes error in some objects, so you
@@ -135,43 +591,198 @@ public class JPCTBlendScene {
 	}
 
 	/**
-	 * Removes everything to the world. Reset camera pos/lookAt.
+	 * Removes everything to the world, then unloads the textures no loaded
+	 * scene is using anymore. Call it from the rendering thread.
+	 * 
+	 * @param fb
+	 *            FrameBuffer used to render the scene
+	 */
+	public void removeSceneFromWorld(FrameBuffer fb) {
+		removeSceneFromWorld();
+
+		// incremental remove: unloaded when the last unit is done
+		if (transitionStep >= 0)
+			unloadFrameBuffer = fb;
+		else
+			SceneTextureManager.getInstance().unloadTextures(fb);
+	}
+
+	/**
+	 * Removes everything to the world. Reset camera pos/lookAt. Meshs used by
+	 * this scene are released from the Object3DManager, and textures from the
+	 * SceneTextureManager (they are unloaded by
+	 * {@link SceneTextureManager#unloadTextures(FrameBuffer)}). With a
+	 * {@link SceneLoadOptions#getFrameBudget() frame budget}, this is done by
+	 * the next calls to {@link #update()} (or {@link #frame()}), a few objects
+	 * per frame.
 	 */
 	public void removeSceneFromWorld() {
 		if (!active)
 			throw new RuntimeException(
 					"Cannot remove scene! It has already been removed!");
+		checkNoTransition();
 
-		for (Object3D instance : instances) {
-			world.removeObject(instance);
-		}
-
-		for (IActor actor : actors) {
-			actor.removeFromWorld();
-		}
+		if (cellStreamer != null)
+			cellStreamer.stop();
 
-		for (Light light : lights) {
-			light.dispose();
-		}
+		if (lightManager != null)
+			lightManager.detach();
 
-		world.getCamera().setPosition(0, 0, 0);
-		world.getCamera().lookAt(new SimpleVector(0, 0, 1));
+		actorScheduler.shutdown();
 
 		active = false;
+		startTransition(false);
+	}
+
+	// ==============================================================Transitions
+
+	private void checkNoTransition() {
+		if (transitionStep >= 0)
+			throw new RuntimeException("JPCTBlend error: scene is still being "
+					+ (adding ? "added to" : "removed from") + " the world!");
+	}
+
+	/**
+	 * Starts adding/removing the scene. Without frame budget the whole
+	 * transition runs now, otherwise it is continued by {@link #frame()}.
+	 * 
+	 * @param add
+	 *            true to add, false to remove
+	 */
+	private void startTransition(boolean add) {
+		adding = add;
+		transitionStep = 0;
+		transitionFrames = 0;
+
+		if (options.getFrameBudget() <= 0)
+			runTransition(Long.MAX_VALUE);
+	}
+
+	/**
+	 * Runs units of work (adding/removing one instance, actor or light) until
+	 * the transition is done or the deadline is reached. At least one unit is
+	 * run per call.
+	 * 
+	 * @param deadline
+	 *            System.nanoTime() deadline
+	 */
+	private void runTransition(long deadline) {
+		int instanceCount = instances.size();
+		int actorCount = actors.size();
+		int total = instanceCount + actorCount
+				+ (adding ? getLightCount() : lights.size());
+
+		do {
+			if (transitionStep == total) {
+				finishTransition();
+				return;
+			}
+
+			int i = transitionStep++;
+
+			if (i < instanceCount) {
+				if (adding)
+					world.addObject(instances.get(i));
+				else
+					world.removeObject(instances.get(i));
+			} else if (i < instanceCount + actorCount) {
+				if (adding)
+					actors.get(i - instanceCount).addToWorld(world);
+				else
+					actors.get(i - instanceCount).removeFromWorld();
+			} else {
+				i -= instanceCount + actorCount;
+				if (adding && lightManager != null) {
+					// lit by the light manager, once the scene is added
+					Light light = new Light(world);
+					light.disable();
+					lights.add(light);
+				} else if (adding) {
+					Light light = createLight(lightInfos.get(i));
+					light.enable();
+					lights.add(light);
+				} else {
+					lights.get(i).dispose();
+				}
+			}
+		} while (System.nanoTime() < deadline);
+	}
+
+	/**
+	 * Ends the current transition (removing releases meshs and textures and
+	 * resets the camera) and notifies the transition listener.
+	 */
+	private void finishTransition() {
+		transitionStep = -1;
+
+		if (adding) {
+			addFrames = transitionFrames;
+
+			if (cellStreamer != null)
+				cellStreamer.start();
+
+			if (lightManager != null)
+				lightManager.attach(lights);
+		} else {
+			lights = null;
+
+			for (String key : retainedMeshKeys)
+				Object3DManager.getInstance().releaseObject3D(key);
+			retainedMeshKeys = null;
+
+			for (String txName : retainedTextures)
+				SceneTextureManager.getInstance().releaseTexture(txName);
+			retainedTextures = null;
+
+			if (unloadFrameBuffer != null) {
+				SceneTextureManager.getInstance().unloadTextures(
+						unloadFrameBuffer);
+				unloadFrameBuffer = null;
+			}
+
+			world.getCamera().setPosition(0, 0, 0);
+			world.getCamera().lookAt(new SimpleVector(0, 0, 1));
+
+			// pooled actors may be taken by another scene, so nothing here
+			// keeps them (new ones are created on re-add)
+			if (options.isActorPooling()) {
+				for (int i = 0; i < actors.size(); i++) {
+					if (actors.get(i) instanceof IPoolableActor) {
+						ActorPool.getInstance().free(
+								actorSources.get(i).getJavaClass(),
+								(IPoolableActor) actors.get(i));
+						actors.set(i, null);
+					}
+				}
+				actorsPooled = true;
+			}
+
+			releaseActorResources();
+
+			removeFrames = transitionFrames;
+		}
+
+		ISceneTransitionListener listener = options.getTransitionListener();
+		if (listener != null) {
+			if (adding)
+				listener.onSceneAdded(this, addFrames);
+			else
+				listener.onSceneRemoved(this, removeFrames);
+		}
 	}
 
 	// =================================================================Parsers
 
 	/**
 	 * Parse all actors and return as list. All actors must be defined as Java
-	 * classes.
+	 * classes (they are created by {@link #build()}).
 	 * 
 	 * @param xmlInfo
 	 *            actors xml root
-	 * @return all actors as list
+	 * @return all actors info as list
 	 */
-	private ArrayList<IActor> parseActors(Node xmlActors) {
-		ArrayList<IActor> actorsList = new ArrayList<IActor>();
+	ArrayList<ActorInfo> parseActors(Node xmlActors) {
+		ArrayList<ActorInfo> actorsList = new ArrayList<ActorInfo>();
 
 		NodeList childs = xmlActors.getChildNodes();
 
@@ -180,15 +791,7 @@ public class JPCTBlendScene {
 			if (node.getNodeType() == Node.ELEMENT_NODE
 					&& node.getNodeName().equals("actor")) {
 
-				IActor actor = ActorFactory.getInstance().createFromString(
-						getAttrValue("javaclass", node));
-
-				if (actor != null) {
-					actor.setPosition(getAttrValueSimpleVector("position", node));
-					actor.setRotation(getAttrValueSimpleVector("rotation", node));
-
-					actorsList.add(actor);
-				}
+				actorsList.add(decodeActor(attrs.set(node)));
 			}
 		}
 
@@ -205,13 +808,10 @@ public class JPCTBlendScene {
 	 *            cameras xml root
 	 * @return all cameras info as list
 	 */
-	private ArrayList<CameraInfo> parseCamera(Node xmlCameras) {
+	ArrayList<CameraInfo> parseCamera(Node xmlCameras) {
 		ArrayList<CameraInfo> cameras = new ArrayList<CameraInfo>();
 
-		CameraInfo cinfo = new CameraInfo(getAttrValueSimpleVector("lookat",
-				xmlCameras), getAttrValueSimpleVector("position", xmlCameras));
-
-		cameras.add(cinfo);
+		cameras.add(decodeCamera(attrs.set(xmlCameras)));
 
 		return cameras;
 	}
@@ -223,23 +823,21 @@ public class JPCTBlendScene {
 	 *            xml root
 	 * @return ExporterInfo with basic exporter data
 	 */
-	private static ExporterInfo parseExporterInfo(Node xmlInfo) {
-		return new ExporterInfo(getAttrValue("author", xmlInfo), getAttrValue(
-				"contact", xmlInfo), getAttrValueDate("date", xmlInfo),
-				getAttrValue("script", xmlInfo), getAttrValueInteger("version",
-						xmlInfo));
+	private ExporterInfo parseExporterInfo(Node xmlInfo) {
+		return decodeExporterInfo(attrs.set(xmlInfo));
 	}
 
 	/**
-	 * Loads all meshs and add them to the MeshsManager. Also returns a a list
-	 * of configured (pos/rot/scale/texture) Object3D's.
+	 * Parses all instances (pos/rot/scale/texture). Meshs start loading here
+	 * (in parallel, see {@link SceneLoadOptions#getMeshThreads()}), the
+	 * Object3D's are built later, so each distinct mesh is loaded just once.
 	 * 
 	 * @param xmlInstances
 	 *            instances root xml node
-	 * @return all loaded instances as a strings list
+	 * @return all instances info as list
 	 */
-	private ArrayList<Object3D> parseInstances(Node xmlInstances) {
-		ArrayList<Object3D> instancesList = new ArrayList<Object3D>();
+	ArrayList<InstanceInfo> parseInstances(Node xmlInstances) {
+		ArrayList<InstanceInfo> instanceInfos = new ArrayList<InstanceInfo>();
 
 		NodeList childs = xmlInstances.getChildNodes();
 
@@ -248,59 +846,25 @@ public class JPCTBlendScene {
 			if (node.getNodeType() == Node.ELEMENT_NODE
 					&& node.getNodeName().equals("instance")) {
 
-				String meshFile = getAttrValue("mesh_name", node) + ".3ds";
-
-				Object3D obj = null;
-				
-				// Configured blender to export one object per file, so
-				// loads just index [0]
-				obj = Loader.load3DS(sceneBasePath + "meshs" + File.separator
-						+ meshFile, 1.0f)[0];
-				
-				Object3DManager.getInstance().putObject3D(meshFile, obj);
-
-				obj.translate(getAttrValueSimpleVector("position", node));
-
-				SimpleVector rot = getAttrValueSimpleVector("rotation", node);
-
-				obj.rotateX(rot.x);
-				obj.rotateY(rot.y);
-				obj.rotateZ(rot.z);
-
-				// TODO: create scale method
-				// JPCT does not support 3 axis scale? :(
-				// disabled for now..
-				// obj.scale(getAttrValueSimpleVector("scale", node).x);
-
-				String textureName = getAttrValue("texture", node);
-				obj.setTexture(textureName);
+				InstanceInfo info = decodeInstance(attrs.set(node));
 
-				//alpha to "png" textures
-				if (textureName.length() > 3) {
-
-					String ext = getAttrValue("texture", node).substring(
-							textureName.length() - 3, textureName.length());
-
-					if (ext.equals("png"))
-						obj.setTransparency(10);
-				}
-
-				instancesList.add(obj);
+				requestMesh(info.getMeshFile());
+				instanceInfos.add(info);
 			}
 		}
 
-		return instancesList;
+		return instanceInfos;
 	}
 
 	/**
-	 * Loads and add all lights to world
+	 * Parses all point lights (and the ambient light)
 	 * 
 	 * @param xmlLights
 	 *            xml lights root
-	 * @return
+	 * @return all point lights info as list
 	 */
-	private ArrayList<Light> parseLights(Node xmlLights) {
-		ArrayList<Light> listLights = new ArrayList<Light>();
+	ArrayList<LightInfo> parseLights(Node xmlLights) {
+		ArrayList<LightInfo> listLights = new ArrayList<LightInfo>();
 
 		NodeList childs = xmlLights.getChildNodes();
 
@@ -309,32 +873,13 @@ public class JPCTBlendScene {
 			if (node.getNodeType() == Node.ELEMENT_NODE
 					&& node.getNodeName().equals("pointlight")) {
 
-				Light light = new Light(world);
-
-				light.setPosition(getAttrValueSimpleVector("position", node));
-
-				SimpleVector intensity = getAttrValueSimpleVector("rgbcolor",
-						node);
-				intensity.scalarMul(getAttrValueFloat("distance", node) * 2.5f);// experimental
-																				// param
-
-				light.setIntensity(intensity);
-				light.setAttenuation(getAttrValueFloat("distance", node) * 0.2f);// experimental
-																					// param
-				light.setDiscardDistance(getAttrValueFloat("distance", node) * 1.5f);// experimental
-																						// param
-
-				listLights.add(light);
+				listLights.add(decodeLight(attrs.set(node)));
 			}
 
 			if (node.getNodeType() == Node.ELEMENT_NODE
 					&& node.getNodeName().equals("ambient")) {
 
-				ambientLight = getAttrValueSimpleVector("rgbcolor", node);
-
-				world.setAmbientLight((int) (ambientLight.x * 255),
-						(int) (ambientLight.y * 255),
-						(int) (ambientLight.z * 255));
+				ambientLight = attrs.set(node).getVector("rgbcolor", null);
 			}
 		}
 
@@ -342,15 +887,15 @@ public class JPCTBlendScene {
 	}
 
 	/**
-	 * Loads all textures and add them to the JPCT TextureManager. Also returns
-	 * a a list of textures (can be used to separe textures loaded by the user
-	 * and textures loaded by the JPCTBlend importer.
+	 * Parses the textures list (textures are decoded by {@link #build()}). The
+	 * list can be used to separe textures loaded by the user and textures
+	 * loaded by the JPCTBlend importer.
 	 * 
 	 * @param xmlTextures
 	 *            textures root xml node
 	 * @return all loaded textures as a strings list
 	 */
-	private ArrayList<String> parseTextures(Node xmlTextures) {
+	ArrayList<String> parseTextures(Node xmlTextures) {
 		ArrayList<String> listTextures = new ArrayList<String>();
 
 		NodeList childs = xmlTextures.getChildNodes();
@@ -359,18 +904,51 @@ public class JPCTBlendScene {
 			Node node = childs.item(i);
 			if (node.getNodeType() == Node.ELEMENT_NODE) {
 
-				String txName = node.getNodeName();
-				Texture newTx = new Texture(sceneBasePath + "textures"
-						+ File.separator + txName);
-
-				TextureManager.getInstance().addTexture(txName, newTx);
-				listTextures.add(txName);
+				listTextures.add(node.getNodeName());
 			}
 		}
 
 		return listTextures;
 	}
 
+	// =================================================================Element
+	// decoders, shared by the DOM and the streaming parsers
+
+	private static ExporterInfo decodeExporterInfo(ElementAttributes attrs) {
+		return new ExporterInfo(attrs.getString("author"),
+				attrs.getString("contact"), parseDate(attrs.getString("date")),
+				attrs.getString("script"), attrs.getInt("version", 0));
+	}
+
+	private static CameraInfo decodeCamera(ElementAttributes attrs) {
+		return new CameraInfo(attrs.getVector("lookat", null),
+				attrs.getVector("position", null));
+	}
+
+	private InstanceInfo decodeInstance(ElementAttributes attrs) {
+		String meshName = attrs.getString("mesh_name");
+		String meshFile = meshFiles.get(meshName);
+		if (meshFile == null) {
+			meshFile = meshName + ".3ds";
+			meshFiles.put(meshName, meshFile);
+		}
+
+		return new InstanceInfo(meshFile, attrs.getString("texture"),
+				attrs.getVector("position", null), attrs.getVector(
+						"rotation", null), attrs.getVector("scale", null));
+	}
+
+	private static LightInfo decodeLight(ElementAttributes attrs) {
+		return new LightInfo(attrs.getVector("position", null),
+				attrs.getVector("rgbcolor", null), attrs.getFloat("distance",
+						0));
+	}
+
+	private static ActorInfo decodeActor(ElementAttributes attrs) {
+		return new ActorInfo(attrs.getString("javaclass"), attrs.getVector(
+				"position", null), attrs.getVector("rotation", null));
+	}
+
 	/**
 	 * Given a xml node (root), parses all (importing meshs, textures,
 	 * instances, etc)
@@ -380,79 +958,992 @@ public class JPCTBlendScene {
 	 */
 	private void parseRoot(Node xmlRoot) {
 		exporterInfo = parseExporterInfo(findSubNode("exporter_info", xmlRoot));
+		checkVersion();
 
+		textures = parseTextures(findSubNode("textures", xmlRoot));
+		lightInfos = parseLights(findSubNode("lights", xmlRoot));
+		instanceInfos = parseInstances(findSubNode("instances", xmlRoot));
+		cameras = parseCamera(findSubNode("camera", xmlRoot));
+		actorInfos = parseActors(findSubNode("actors", xmlRoot));
+	}
+
+	/**
+	 * Given a compiled scene (see {@link SceneCompiler}), reads the same
+	 * textures, lights, instances, cameras and actors the xml parsers do. No
+	 * DOM is created: strings come from the compiled string table and all
+	 * vectors are read straight from the mapped float arrays.
+	 * 
+	 * @param compiled
+	 *            the opened compiled scene
+	 */
+	private void parseCompiled(CompiledScene compiled) {
+		exporterInfo = compiled.getExporterInfo();
+		checkVersion();
+
+		textures = new ArrayList<String>(compiled.getTextureCount());
+		for (int i = 0, len = compiled.getTextureCount(); i < len; i++) {
+			textures.add(compiled.getTextureName(i));
+		}
+
+		if (compiled.hasAmbientLight())
+			ambientLight = compiled.getAmbientLight();
+
+		lightInfos = new ArrayList<LightInfo>(compiled.getLightCount());
+		for (int i = 0, len = compiled.getLightCount(); i < len; i++) {
+			lightInfos.add(new LightInfo(compiled.getLightPosition(i, null),
+					compiled.getLightColor(i, null),
+					compiled.getLightDistance(i)));
+		}
+
+		instanceInfos = new ArrayList<InstanceInfo>(compiled.getInstanceCount());
+		for (int i = 0, len = compiled.getInstanceCount(); i < len; i++) {
+			InstanceInfo info = new InstanceInfo(
+					compiled.getInstanceMeshFile(i),
+					compiled.getInstanceTexture(i),
+					compiled.getInstancePosition(i, null),
+					compiled.getInstanceRotation(i, null),
+					compiled.getInstanceScale(i, null));
+
+			requestMesh(info.getMeshFile());
+			instanceInfos.add(info);
+		}
+
+		cameras = new ArrayList<CameraInfo>(compiled.getCameraCount());
+		for (int i = 0, len = compiled.getCameraCount(); i < len; i++) {
+			cameras.add(new CameraInfo(compiled.getCameraLookAt(i),
+					compiled.getCameraPosition(i)));
+		}
+
+		actorInfos = new ArrayList<ActorInfo>(compiled.getActorCount());
+		for (int i = 0, len = compiled.getActorCount(); i < len; i++) {
+			actorInfos.add(new ActorInfo(compiled.getActorClass(i),
+					compiled.getActorPosition(i, null),
+					compiled.getActorRotation(i, null)));
+		}
+	}
+
+	// =================================================================Builders
+
+	/**
+	 * Make sure the loaded file was exported by a supported exporter version.
+	 */
+	private void checkVersion() {
 		if (exporterInfo.getVersion() != IMPORTER_VERSION)
 			throw new RuntimeException(
 					"JPCTBlend: unsupported jpctblend file!\n		Your file was exported from Blender using exporter version '"
 							+ exporterInfo.getVersion()
 							+ "', this importer can only load files of version '"
 							+ IMPORTER_VERSION + "'.");
-
-		textures = parseTextures(findSubNode("textures", xmlRoot));
-		lights = parseLights(findSubNode("lights", xmlRoot));
-		instances = parseInstances(findSubNode("instances", xmlRoot));
-		cameras = parseCamera(findSubNode("camera", xmlRoot));
-		actors = parseActors(findSubNode("actors", xmlRoot));
-
-		System.out.println(exporterInfo);
-		System.out.println("JPCTBlend: Loaded " + textures.size()
-				+ " textures.");
-		System.out.println("JPCTBlend: Loaded " + instances.size()
-				+ " instances using " + Object3DManager.getInstance().size()
-				+ " meshs.");
-		System.out.println("JPCTBlend: Loaded " + actors.size() + " actors.");
 	}
 
 	/**
-	 * Update all JPCTBlend objects and fixes rotationPivot after build(); 
-	 * Actors are updated in the scene by calling the "act" method for each one.
+	 * Decodes (in the loading thread) the textures that are not loaded yet.
+	 * They are added to the TextureManager by {@link #loadTextures(List)}.
+	 * 
+	 * @param txNames
+	 *            texture file names
 	 */
-	public void update() {
-		if(!pivotsFixed)
-			fixPivots();
-			
-		for (IActor actor : actors) {
-			actor.act();
+	private void prepareTextures(List<String> txNames) {
+		ArrayList<String> missing = new ArrayList<String>();
+
+		for (String txName : txNames) {
+			if (!SceneTextureManager.getInstance().isOwned(txName)
+					&& !TextureManager.getInstance().containsTexture(txName))
+				missing.add(txName);
+			else
+				loadStats.assetCached(LoadPhase.TEXTURES, txName);
 		}
-	}
 
-	// =================================================================XML
-	// Helpers
+		ArrayList<Texture> decoded = decodeTextures(missing);
+
+		for (int i = 0; i < missing.size(); i++)
+			decodedTextures.put(missing.get(i), decoded.get(i));
+	}
 
 	/**
+	 * Loads all textures and adds them to the JPCT TextureManager. Textures
+	 * already loaded by JPCTBlend (for another scene) are just referenced
+	 * again, and textures the user added to the TextureManager are used as
+	 * they are. See {@link SceneTextureManager}. Textures decoded by
+	 * {@link #prepareTextures(List)} are not decoded again.
 	 * 
-	 * @param name
-	 *            Attribute name
-	 * @param node
-	 *            Container node
-	 * @return String with the value, null otherwise
+	 * @param txNames
+	 *            texture file names (also used as TextureManager keys)
+	 * @return true if any texture was decoded
 	 */
-	public static String getAttrValue(String name, Node node) {
-		Node attr = findAttribute(name, node);
-		if (attr != null)
-			return attr.getNodeValue();
-		else
-			return null;
-	}
+	private boolean loadTextures(List<String> txNames) {
+		SceneTextureManager sceneTextures = SceneTextureManager.getInstance();
 
-	public static Date getAttrValueDate(String name, Node node) {
-		Node attr = findAttribute(name, node);
-		try {
-			if (attr != null)
-				return new SimpleDateFormat("yyyy/MM/dd").parse(attr
-						.getNodeValue());
-		} catch (ParseException e) {
-			e.printStackTrace();
+		retainedTextures = new ArrayList<String>();
+		ArrayList<String> missing = new ArrayList<String>();
+
+		for (String txName : txNames) {
+			if (sceneTextures.retainTexture(txName))
+				retainedTextures.add(txName);
+			else if (!TextureManager.getInstance().containsTexture(txName))
+				missing.add(txName);
 		}
-		return null;
+
+		ArrayList<String> undecoded = new ArrayList<String>();
+		for (String txName : missing) {
+			if (!decodedTextures.containsKey(txName))
+				undecoded.add(txName);
+		}
+
+		ArrayList<Texture> decoded = decodeTextures(undecoded);
+		for (int i = 0; i < undecoded.size(); i++)
+			decodedTextures.put(undecoded.get(i), decoded.get(i));
+
+		for (int i = 0; i < missing.size(); i++) {
+			TextureManager.getInstance().addTexture(missing.get(i),
+					decodedTextures.remove(missing.get(i)));
+			sceneTextures.registerTexture(missing.get(i));
+			retainedTextures.add(missing.get(i));
+		}
+
+		return !missing.isEmpty();
 	}
 
 	/**
+	 * Decodes textures on a pool of {@link SceneLoadOptions#getTextureThreads()}
+	 * threads (or on the calling thread, for one thread). Textures are not
+	 * added to the TextureManager, this is left to the calling thread.
 	 * 
-	 * @param name
-	 *            Attribute name
-	 * @param node
-	 *            Container node
+	 * @param txNames
+	 *            texture file names
+	 * @return the decoded textures, in the same order
+	 */
+	private ArrayList<Texture> decodeTextures(List<String> txNames) {
+		ArrayList<Texture> decoded = new ArrayList<Texture>(txNames.size());
+		int threads = Math.min(options.getTextureThreads(), txNames.size());
+
+		if (threads <= 1) {
+			for (String txName : txNames) {
+				decoded.add(decodeTexture(txName));
+				reportProgress(LoadPhase.TEXTURES, decoded.size(),
+						txNames.size());
+			}
+			return decoded;
+		}
+
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		try {
+			ArrayList<Future<Texture>> pending = new ArrayList<Future<Texture>>();
+
+			for (final String txName : txNames) {
+				pending.add(pool.submit(new Callable<Texture>() {
+					@Override
+					public Texture call() {
+						return decodeTexture(txName);
+					}
+				}));
+			}
+
+			for (Future<Texture> future : pending) {
+				decoded.add(future.get());
+				reportProgress(LoadPhase.TEXTURES, decoded.size(),
+						txNames.size());
+			}
+
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(
+					"JPCTBlend error: interrupted while loading textures!", e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException(
+					"JPCTBlend error: Can't load texture!", e.getCause());
+		} finally {
+			pool.shutdown();
+		}
+
+		return decoded;
+	}
+
+	/**
+	 * Decodes a texture from the scene "textures" folder, recording how long
+	 * it took (in the load stats too). Safe to call from any thread, since
+	 * the texture is not added to the TextureManager.
+	 * 
+	 * @param txName
+	 *            texture file name
+	 * @return the decoded texture
+	 */
+	private Texture decodeTexture(String txName) {
+		long start = System.nanoTime();
+		long cpuStart = SceneLoadStats.cpuTime();
+		loadStats.assetStarted(LoadPhase.TEXTURES, txName);
+
+		File file = new File(sceneBasePath + "textures" + File.separator
+				+ txName);
+		Texture newTx = new Texture(file.getPath());
+
+		long time = System.nanoTime() - start;
+		textureDecodeTimes.put(txName, time / 1000000);
+		loadStats.assetFinished(LoadPhase.TEXTURES, txName, file.length(),
+				time, SceneLoadStats.cpuTime() - cpuStart);
+		return newTx;
+	}
+
+	/**
+	 * Starts loading a mesh in background (when loading with more than one
+	 * mesh thread). Meshs already loaded or being loaded are not read again.
+	 * 
+	 * @param meshFile
+	 *            mesh file name (inside the scene "meshs" folder)
+	 */
+	private void requestMesh(String meshFile) {
+		if (meshPool != null && prefetchedMeshs.add(meshFile)) {
+			String key = meshKey(meshFile);
+			pinnedMeshs.add(key);
+			Object3DManager.getInstance().prefetchObject3D(key, key, meshPool,
+					loadStats);
+		}
+	}
+
+	/**
+	 * Loads (or waits for the prefetch of) a mesh and holds a reference to it
+	 * in the Object3DManager.
+	 * 
+	 * @param meshFile
+	 *            mesh file name (inside the scene "meshs" folder)
+	 */
+	private void acquireMesh(String meshFile) {
+		String key = meshKey(meshFile);
+		Object3DManager.getInstance().acquireObject3D(key, key,
+				meshStats(meshFile), pinnedMeshs.contains(key));
+		pinnedMeshs.remove(key);
+	}
+
+	/**
+	 * @return the Object3DManager key of a mesh of this scene: its path, so
+	 *         meshs of the same name in other scene folders are not mixed up
+	 */
+	private String meshKey(String meshFile) {
+		return sceneBasePath + "meshs" + File.separator + meshFile;
+	}
+
+	/**
+	 * @return the load stats to record a mesh load with, null if the mesh was
+	 *         already recorded by {@link #requestMesh(String)}
+	 */
+	private SceneLoadStats meshStats(String meshFile) {
+		return prefetchedMeshs.contains(meshFile) ? null : loadStats;
+	}
+
+	/**
+	 * Builds the Object3D of each instance. Instances of the same mesh are
+	 * clones sharing the loaded mesh and the compiled data of the first one,
+	 * so memory grows with the number of distinct meshs (unless
+	 * {@link SceneLoadOptions#isSharedInstancing()} is off: then each instance
+	 * gets its own copy). Textures are set by
+	 * {@link #addSceneToWorld()}, once they are in the TextureManager.
+	 * 
+	 * @param infos
+	 *            parsed instances
+	 * @return configured Object3D's, in the same order
+	 */
+	private ArrayList<Object3D> createInstances(List<InstanceInfo> infos) {
+		ArrayList<Object3D> instancesList = new ArrayList<Object3D>(
+				infos.size());
+		instanceTextures = new ArrayList<String>(infos.size());
+		instanceObjects = new int[infos.size()];
+
+		// mesh -> first instance, which owns the compiled data
+		HashMap<String, Object3D> sharingSources = new HashMap<String, Object3D>();
+
+		meshKeys = new ArrayList<String>();
+
+		for (InstanceInfo info : infos) {
+			String meshFile = info.getMeshFile();
+			Object3D source = sharingSources.get(meshFile);
+
+			// this scene holds one reference to each mesh it uses
+			if (source == null) {
+				acquireMesh(meshFile);
+				meshKeys.add(meshKey(meshFile));
+			}
+
+			Object3D obj;
+
+			if (!options.isSharedInstancing()) {
+				obj = Object3DManager.getInstance().copyObject3D(
+						meshKey(meshFile));
+				placeInstance(obj, info);
+			} else {
+				obj = createInstance(meshKey(meshFile), info);
+			}
+
+			if (source == null) {
+				sharingSources.put(meshFile, obj);
+			} else if (options.isSharedInstancing()) {
+				obj.shareCompiledData(source);
+
+				Long saved = instancingSavings.get(meshFile);
+				instancingSavings.put(meshFile, (saved == null ? 0 : saved)
+						+ Object3DManager.estimateInstanceBytes(obj));
+			}
+
+			instanceObjects[instancesList.size()] = instancesList.size();
+			instanceTextures.add(info.getTexture());
+			instancesList.add(obj);
+			reportProgress(LoadPhase.INSTANCES, instancesList.size(),
+					infos.size());
+		}
+
+		retainedMeshKeys = new ArrayList<String>(meshKeys);
+
+		return instancesList;
+	}
+
+	/**
+	 * Merges the instances into a few static objects: instances sharing
+	 * texture and transparency (and batch cell, see
+	 * {@link SceneLoadOptions#getBatchCellSize()}) become a single object,
+	 * with the transformations applied to the merged mesh. Each part gets a
+	 * copy of the mesh, so loaded meshs are released once merged.
+	 * 
+	 * @param infos
+	 *            parsed instances
+	 * @return the merged objects
+	 */
+	private ArrayList<Object3D> createBatches(List<InstanceInfo> infos) {
+		long start = System.nanoTime();
+
+		instanceTextures = new ArrayList<String>();
+		instanceObjects = new int[infos.size()];
+
+		// batch key -> instance indexes, in scene order
+		LinkedHashMap<String, ArrayList<Integer>> groups = new LinkedHashMap<String, ArrayList<Integer>>();
+		LinkedHashSet<String> meshFiles = new LinkedHashSet<String>();
+
+		float cellSize = options.getBatchCellSize();
+
+		for (int i = 0; i < infos.size(); i++) {
+			InstanceInfo info = infos.get(i);
+			String key = info.getTexture() + "|"
+					+ isTransparent(info.getTexture());
+
+			if (cellSize > 0)
+				key += "|" + (int) Math.floor(info.getPosition().x / cellSize)
+						+ "," + (int) Math.floor(info.getPosition().z / cellSize);
+
+			ArrayList<Integer> group = groups.get(key);
+			if (group == null) {
+				group = new ArrayList<Integer>();
+				groups.put(key, group);
+			}
+			group.add(i);
+			meshFiles.add(info.getMeshFile());
+		}
+
+		for (String meshFile : meshFiles)
+			acquireMesh(meshFile);
+
+		ArrayList<Object3D> batches = new ArrayList<Object3D>(groups.size());
+
+		for (ArrayList<Integer> group : groups.values()) {
+			Object3D[] parts = new Object3D[group.size()];
+
+			for (int i = 0; i < parts.length; i++) {
+				InstanceInfo info = infos.get(group.get(i));
+
+				Object3D part = Object3DManager.getInstance().copyObject3D(
+						meshKey(info.getMeshFile()));
+				placeInstance(part, info);
+
+				part.rotateMesh();
+				part.translateMesh();
+				part.clearRotation();
+				part.clearTranslation();
+
+				parts[i] = part;
+				instanceObjects[group.get(i)] = batches.size();
+			}
+
+			Object3D batch;
+			synchronized (Object3DManager.JPCT_LOCK) {
+				batch = Object3D.mergeAll(parts);
+			}
+
+			String textureName = infos.get(group.get(0)).getTexture();
+			if (isTransparent(textureName))
+				batch.setTransparency(10);
+
+			instanceTextures.add(textureName);
+			batches.add(batch);
+			reportProgress(LoadPhase.BATCHES, batches.size(), groups.size());
+		}
+
+		// parts own their meshs, loaded ones are not needed anymore
+		for (String meshFile : meshFiles)
+			Object3DManager.getInstance().releaseObject3D(meshKey(meshFile));
+
+		meshKeys = new ArrayList<String>();
+		retainedMeshKeys = new ArrayList<String>();
+
+		batchTime = (System.nanoTime() - start) / 1000000;
+
+		return batches;
+	}
+
+	/**
+	 * Clones the (loaded once) mesh of an instance and configures it
+	 * (pos/rot/transparency). The mesh must be already acquired.
+	 * 
+	 * @param meshKey
+	 *            Object3DManager key of the mesh (its path)
+	 * @param info
+	 *            parsed instance
+	 * @return the configured Object3D
+	 */
+	static Object3D createInstance(String meshKey, InstanceInfo info) {
+		Object3D obj = Object3DManager.getInstance().cloneObject3D(meshKey);
+
+		placeInstance(obj, info);
+
+		return obj;
+	}
+
+	/**
+	 * Configures (pos/rot/transparency) the object of an instance.
+	 * 
+	 * @param obj
+	 *            object with cleared transformations
+	 * @param info
+	 *            parsed instance
+	 */
+	private static void placeInstance(Object3D obj, InstanceInfo info) {
+		SimpleVector rot = info.getRotation();
+
+		obj.translate(info.getPosition());
+
+		obj.rotateX(rot.x);
+		obj.rotateY(rot.y);
+		obj.rotateZ(rot.z);
+
+		// TODO: create scale method
+		// JPCT does not support 3 axis scale? :(
+		// disabled for now..
+		// obj.scale(getAttrValueSimpleVector("scale", node).x);
+
+		//alpha to "png" textures
+		if (isTransparent(info.getTexture()))
+			obj.setTransparency(10);
+	}
+
+	/**
+	 * @return true for textures with alpha ("png" textures)
+	 */
+	private static boolean isTransparent(String textureName) {
+		return textureName.length() > 3 && textureName.endsWith("png");
+	}
+
+
+	/**
+	 * Creates a point light (the light is added to the world by JPCT).
+	 * 
+	 * @param info
+	 *            parsed light (position, color and distance, as exported by
+	 *            blender)
+	 * @return the new light
+	 */
+	private Light createLight(LightInfo info) {
+		Light light = new Light(world);
+		configureLight(light, info);
+		return light;
+	}
+
+	/**
+	 * Sets position, color and distance of a scene light to a JPCT light.
+	 * 
+	 * @param light
+	 *            JPCT light (e.g. one moved around by the LightManager)
+	 * @param info
+	 *            parsed light
+	 */
+	static void configureLight(Light light, LightInfo info) {
+		light.setPosition(info.getPosition());
+
+		SimpleVector intensity = new SimpleVector(info.getRgbColor());
+		intensity.scalarMul(info.getDistance() * 2.5f);// experimental param
+
+		light.setIntensity(intensity);
+		light.setAttenuation(info.getDistance() * 0.2f);// experimental param
+		light.setDiscardDistance(info.getDistance() * 1.5f);// experimental param
+	}
+
+	/**
+	 * @return JPCT lights of the scene: one per scene light, or the max
+	 *         lights with a light manager
+	 */
+	private int getLightCount() {
+		return lightManager != null ? lightManager.getSlotCount() : lightInfos
+				.size();
+	}
+
+	/**
+	 * Starts loading, in background, the files used by each actor class, so
+	 * they are read while textures and instances are loaded (see
+	 * {@link ActorResources}).
+	 * 
+	 * @param infos
+	 *            parsed actors
+	 */
+	private void prefetchActors(List<ActorInfo> infos) {
+		HashSet<String> classes = new HashSet<String>();
+		for (ActorInfo info : infos) {
+			if (classes.add(info.getJavaClass()))
+				ActorFactory.getInstance().prefetch(info.getJavaClass());
+		}
+	}
+
+	/**
+	 * Holds the actor resources (meshs and textures of the actors) while the
+	 * scene is loaded or in the world.
+	 */
+	private void retainActorResources() {
+		if (actorResources == null) {
+			actorResources = ActorFactory.getInstance().getResources();
+			actorResources.retainScene();
+		}
+	}
+
+	private void releaseActorResources() {
+		if (actorResources != null) {
+			actorResources.releaseScene();
+			actorResources = null;
+		}
+	}
+
+	/**
+	 * Creates all actors. Actors that could not be created are skipped.
+	 * 
+	 * @param infos
+	 *            parsed actors
+	 * @return the created actors
+	 */
+	private ArrayList<IActor> createActors(List<ActorInfo> infos) {
+		ArrayList<IActor> actorsList = new ArrayList<IActor>(infos.size());
+		actorSources = new ArrayList<ActorInfo>(infos.size());
+
+		for (int i = 0; i < infos.size(); i++) {
+			IActor actor = createActor(infos.get(i));
+
+			if (actor != null) {
+				actorsList.add(actor);
+				actorSources.add(infos.get(i));
+			}
+
+			reportProgress(LoadPhase.ACTORS, i + 1, infos.size());
+		}
+
+		return actorsList;
+	}
+
+	/**
+	 * Creates an actor through the ActorFactory (or takes it from the
+	 * ActorPool, with actor pooling) and places it.
+	 * 
+	 * @param info
+	 *            parsed actor (class name inside the actors package,
+	 *            position and rotation)
+	 * @return the actor, null if it could not be created
+	 */
+	private IActor createActor(ActorInfo info) {
+		IActor actor = null;
+
+		if (options.isActorPooling())
+			actor = ActorPool.getInstance().obtain(info.getJavaClass());
+
+		if (actor == null)
+			actor = ActorFactory.getInstance().createFromString(
+					info.getJavaClass());
+
+		if (actor != null) {
+			actor.setPosition(info.getPosition());
+			actor.setRotation(info.getRotation());
+		}
+
+		return actor;
+	}
+
+	/**
+	 * Starts timing a phase (ended by {@link #endPhase(LoadPhase)}, from the
+	 * same thread).
+	 */
+	private void beginPhase(LoadPhase phase) {
+		phaseWallStart = System.nanoTime();
+		phaseCpuStart = SceneLoadStats.cpuTime();
+		loadStats.phaseStarted(phase);
+	}
+
+	private void endPhase(LoadPhase phase) {
+		loadStats.phaseFinished(phase, System.nanoTime() - phaseWallStart,
+				SceneLoadStats.cpuTime() - phaseCpuStart);
+	}
+
+	/**
+	 * Notifies the load listener (if any).
+	 */
+	private void reportProgress(LoadPhase phase, int done, int total) {
+		if (options.getLoadListener() != null)
+			options.getLoadListener().onProgress(phase, done, total);
+	}
+
+	/**
+	 * Logs (at info level) some information about the loaded scene, and its
+	 * load stats.
+	 */
+	private void printSummary() {
+		if (!JPCTBlendLog.isEnabled(JPCTBlendLog.LL_INFO))
+			return;
+
+		JPCTBlendLog.info(String.valueOf(exporterInfo));
+		long decodeTime = 0;
+		for (long time : textureDecodeTimes.values())
+			decodeTime += time;
+
+		JPCTBlendLog.info("Loaded " + textures.size()
+				+ " textures (" + decodeTime + " ms decoding, "
+				+ Math.max(1, options.getTextureThreads()) + " threads).");
+		if (options.isBatching() && cellStreamer == null)
+			JPCTBlendLog.info("Batched " + instanceInfos.size()
+					+ " instances into " + instances.size() + " objects ("
+					+ batchTime + " ms).");
+		else if (cellStreamer != null)
+			JPCTBlendLog.info("Streaming " + instanceInfos.size()
+					+ " instances in " + cellStreamer.getCellCount()
+					+ " cells.");
+		else
+			JPCTBlendLog.info("Loaded " + instances.size()
+					+ " instances using " + meshKeys.size() + " meshs.");
+
+		if (!instancingSavings.isEmpty()) {
+			long saved = 0;
+			for (long bytes : instancingSavings.values())
+				saved += bytes;
+
+			JPCTBlendLog.info("Instancing saved about " + saved
+					+ " bytes (" + instancingSavings.size()
+					+ " shared meshs): " + instancingSavings);
+		}
+		JPCTBlendLog.info("Loaded " + actors.size() + " actors.");
+		JPCTBlendLog.info("Load stats:\n" + loadStats);
+	}
+
+	/**
+	 * Update all JPCTBlend objects and fixes rotationPivot after build(); 
+	 * Actors are updated in the scene by calling the "act" method for each one
+	 * (parallel actors act at the same time, see {@link ActorScheduler}).
+	 * While the scene is being added/removed incrementally, this continues the
+	 * transition instead (within the frame budget). The simulation advances
+	 * by the real time elapsed since the last update (see
+	 * {@link #update(float)} for fixed steps).
+	 */
+	public void update() {
+		long now = System.nanoTime();
+		float dt = lastUpdateTime == 0 ? 0 : (now - lastUpdateTime) / 1000000000f;
+		lastUpdateTime = now;
+
+		update(dt);
+	}
+
+	/**
+	 * Same as {@link #update()}, advancing the simulation by a given time
+	 * step: {@link #frame()} followed by {@link #simulate(float)}. The
+	 * {@link SceneLoadOptions#getUpdateListener() update listener}, if any,
+	 * is told how long it took.
+	 * 
+	 * @param dt
+	 *            simulation step (s), given to timed and parallel actors
+	 */
+	public void update(float dt) {
+		run(dt, true, true);
+	}
+
+	/**
+	 * Does the per frame work, once per rendered frame: continues the
+	 * incremental add/remove (within the frame budget), streams cells,
+	 * chooses the lit lights, culls instances and fixes the rotation pivots.
+	 * Actors do not act (see {@link #simulate(float)}). Use it with
+	 * simulate() when the simulation runs at its own rate (see
+	 * {@link GameLoop}), otherwise call {@link #update(float)}.
+	 */
+	public void frame() {
+		run(0, true, false);
+	}
+
+	/**
+	 * Advances the simulation by a step: actors act (those due, with actor
+	 * tiers). Nothing is done while the scene is being added/removed or once
+	 * removed. Call it once per simulation step, after the {@link #frame()}
+	 * of the frame.
+	 * 
+	 * @param dt
+	 *            simulation step (s), given to timed and parallel actors
+	 */
+	public void simulate(float dt) {
+		run(dt, false, true);
+	}
+
+	/**
+	 * Runs the frame work and/or the simulation, telling the update listener
+	 * and the update stats (each call is an update for them).
+	 */
+	private void run(float dt, boolean frame, boolean simulate) {
+		ISceneUpdateListener listener = options.getUpdateListener();
+		if (listener == null && updateStats == null) {
+			step(dt, frame, simulate);
+			return;
+		}
+
+		long start = System.nanoTime();
+		if (listener != null)
+			listener.onUpdateStarted();
+
+		pivotTime = -1;
+		int acted = step(dt, frame, simulate);
+		long updateTime = System.nanoTime() - start;
+
+		if (updateStats != null)
+			updateStats.record(updateTime, pivotTime, actors,
+					actorScheduler.getActTimes(), dueActors, acted);
+		if (listener != null)
+			listener.onUpdateFinished(updateTime, acted);
+	}
+
+	/**
+	 * Does the work of {@link #frame()} and/or {@link #simulate(float)}.
+	 * 
+	 * @return number of actors that acted
+	 */
+	private int step(float dt, boolean frame, boolean simulate) {
+		if (frame)
+			frameStep();
+
+		if (!simulate)
+			return 0;
+
+		simulationTime += dt;
+
+		// added/removed incrementally, or removed: actors (maybe pooled) must
+		// not act
+		if (transitionStep >= 0 || !active)
+			return 0;
+
+		int count;
+		if (actorLod != null) {
+			count = actorLod.collect(world.getCamera().getPosition(),
+					dueActors);
+		} else {
+			count = actors.size();
+			for (int i = 0; i < count; i++)
+				dueActors[i] = i;
+		}
+
+		actorScheduler.update(actors, dueActors, count, world,
+				simulationTime, dt);
+
+		if (actorLod != null)
+			actorLod.acted(actors, dueActors, count);
+
+		return count;
+	}
+
+	/**
+	 * Does the work of {@link #frame()}.
+	 */
+	private void frameStep() {
+		if (transitionStep >= 0) {
+			transitionFrames++;
+
+			// each frame adding the scene is timed
+			boolean timed = adding;
+			if (timed)
+				beginPhase(LoadPhase.ADD_TO_WORLD);
+
+			runTransition(System.nanoTime()
+					+ (long) (options.getFrameBudget() * 1000000));
+
+			if (timed)
+				endPhase(LoadPhase.ADD_TO_WORLD);
+
+			if (transitionStep >= 0)
+				return;
+		}
+
+		if (!active)
+			return;
+
+		if (cellStreamer != null)
+			cellStreamer.update(options.getFrameBudget() > 0 ? System
+					.nanoTime() + (long) (options.getFrameBudget() * 1000000)
+					: Long.MAX_VALUE);
+
+		if (lightManager != null)
+			lightManager.update(world.getCamera().getPosition(cameraPosition));
+
+		if (instanceCuller != null)
+			instanceCuller.update(world.getCamera());
+
+		if(!pivotsFixed) {
+			long pivotStart = updateStats != null ? System.nanoTime() : 0;
+			fixPivots();
+			if (updateStats != null)
+				pivotTime = System.nanoTime() - pivotStart;
+		}
+	}
+
+	/**
+	 * @return true while the scene is being added/removed incrementally
+	 */
+	public boolean isTransitioning() {
+		return transitionStep >= 0;
+	}
+
+	/**
+	 * @return frames the last (incremental) add took, 0 if not incremental
+	 */
+	public int getAddFrames() {
+		return addFrames;
+	}
+
+	/**
+	 * @return frames the last (incremental) remove took, 0 if not incremental
+	 */
+	public int getRemoveFrames() {
+		return removeFrames;
+	}
+
+	/**
+	 * @return the actor scheduler (read/commit phase times)
+	 */
+	public ActorScheduler getActorScheduler() {
+		return actorScheduler;
+	}
+
+	/**
+	 * @return the actor tiers, null if not used (see
+	 *         {@link SceneLoadOptions#setActorTiers(float[], int[])})
+	 */
+	public ActorLod getActorLod() {
+		return actorLod;
+	}
+
+	/**
+	 * @return the cell streamer, null if the scene is not streamed (see
+	 *         {@link SceneLoadOptions#setViewRadius(float)})
+	 */
+	public CellStreamer getCellStreamer() {
+		return cellStreamer;
+	}
+
+	/**
+	 * @param index
+	 *            instance index (as in {@link #getInstanceInfos()})
+	 * @return the object the instance was built into (with batching, the
+	 *         object merging it), null for streamed scenes
+	 */
+	public Object3D getInstanceObject(int index) {
+		if (instanceObjects == null)
+			return null;
+		return instances.get(instanceObjects[index]);
+	}
+
+	/**
+	 * @return estimated bytes saved by instancing, for each mesh used by more
+	 *         than one instance
+	 */
+	public Map<String, Long> getInstancingSavings() {
+		return Collections.unmodifiableMap(instancingSavings);
+	}
+
+	/**
+	 * @return load measures of this scene: time of each phase, assets read
+	 *         and cache hits (assets loaded later, e.g. streamed cells, are
+	 *         added as they load)
+	 */
+	public SceneLoadStats getLoadStats() {
+		return loadStats;
+	}
+
+	/**
+	 * @return the instance culler (visible/culled counts), null unless
+	 *         {@link SceneLoadOptions#setCullDistance(float)} was set
+	 */
+	public InstanceCuller getInstanceCuller() {
+		return instanceCuller;
+	}
+
+	/**
+	 * @return the light manager, null unless
+	 *         {@link SceneLoadOptions#setMaxLights(int)} was set
+	 */
+	public LightManager getLightManager() {
+		return lightManager;
+	}
+
+	/**
+	 * @return histograms of the update times, null unless
+	 *         {@link SceneLoadOptions#setUpdateStats(boolean)} was set
+	 */
+	public SceneUpdateStats getUpdateStats() {
+		return updateStats;
+	}
+
+	/**
+	 * @return the static batching time (ms), 0 without batching
+	 */
+	public long getBatchTime() {
+		return batchTime;
+	}
+
+	/**
+	 * @return the parsed data of each instance (same order as the instances)
+	 */
+	public List<InstanceInfo> getInstanceInfos() {
+		return Collections.unmodifiableList(instanceInfos);
+	}
+
+	/**
+	 * @return how long (ms) each texture of this scene took to decode
+	 */
+	public Map<String, Long> getTextureDecodeTimes() {
+		return Collections.unmodifiableMap(textureDecodeTimes);
+	}
+
+	// =================================================================XML
+	// Helpers
+
+	/**
+	 * 
+	 * @param name
+	 *            Attribute name
+	 * @param node
+	 *            Container node
+	 * @return String with the value, null otherwise
+	 */
+	public static String getAttrValue(String name, Node node) {
+		Node attr = findAttribute(name, node);
+		if (attr != null)
+			return attr.getNodeValue();
+		else
+			return null;
+	}
+
+	public static Date getAttrValueDate(String name, Node node) {
+		Node attr = findAttribute(name, node);
+		if (attr != null)
+			return parseDate(attr.getNodeValue());
+		return null;
+	}
+
+	/**
+	 * 
+	 * @param name
+	 *            Attribute name
+	 * @param node
+	 *            Container node
 	 * @return Float with the value, null otherwise
 	 */
 	public static Float getAttrValueFloat(String name, Node node) {
@@ -489,15 +1980,46 @@ public class JPCTBlendScene {
 	 */
 	public static SimpleVector getAttrValueSimpleVector(String name, Node node) {
 		Node attr = findAttribute(name, node);
-		if (attr != null) {
-			String tk[] = attr.getNodeValue().split(",");
-			SimpleVector vec = new SimpleVector(Float.parseFloat(tk[0]),
-					Float.parseFloat(tk[1]), Float.parseFloat(tk[2]));
-			return vec;
-		} else
+		if (attr != null)
+			return parseSimpleVector(attr.getNodeValue());
+		else
 			return null;
 	}
 
+	/**
+	 * 
+	 * @param value
+	 *            date as exported by blender (yyyy/MM/dd)
+	 * @return Date with the value, null if it can't be parsed
+	 */
+	public static Date parseDate(String value) {
+		try {
+			if (value != null)
+				return new SimpleDateFormat("yyyy/MM/dd").parse(value);
+		} catch (ParseException e) {
+			JPCTBlendLog.error("can't parse date " + value, e);
+		}
+		return null;
+	}
+
+	/**
+	 * 
+	 * @param value
+	 *            comma separated vector (x,y,z), values after the third one
+	 *            are ignored
+	 * @return SimpleVector with the value, null otherwise
+	 */
+	public static SimpleVector parseSimpleVector(String value) {
+		if (value == null)
+			return null;
+
+		float[] xyz = new float[3];
+		if (ElementAttributes.parseFloats(value, xyz, 0, 3) < 3)
+			throw new NumberFormatException(
+					"JPCTBlend error: not a vector: " + value);
+		return new SimpleVector(xyz[0], xyz[1], xyz[2]);
+	}
+
 	/**
 	 * Search for a particular attribute in a node.
 	 * 
@@ -509,7 +2031,7 @@ public class JPCTBlendScene {
 	 */
 	public static Node findAttribute(String name, Node node) {
 		if (node.getNodeType() != Node.ELEMENT_NODE) {
-			System.err.println("Error: Search node not of element type");
+			JPCTBlendLog.error("Search node not of element type");
 			System.exit(22);
 		}
 
@@ -541,7 +2063,7 @@ public class JPCTBlendScene {
 	 */
 	public static Node findSubNode(String name, Node node) {
 		if (node.getNodeType() != Node.ELEMENT_NODE) {
-			System.err.println("Error: Search node not of element type");
+			JPCTBlendLog.error("Search node not of element type");
 			System.exit(22);
 		}
 
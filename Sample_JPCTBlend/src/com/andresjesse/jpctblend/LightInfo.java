@@ -0,0 +1,47 @@
+package com.andresjesse.jpctblend;
+
+import com.threed.jpct.SimpleVector;
+
+/**
+ * Light Info, used to store a parsed (blender) point light. JPCT lights are
+ * created from this data when the scene is added to the world.
+ * 
+ * @author andres
+ * 
+ */
+public class LightInfo {
+	private SimpleVector position;
+	private SimpleVector rgbColor;
+	private float distance;
+
+	public LightInfo(SimpleVector position, SimpleVector rgbColor,
+			float distance) {
+		this.position = position;
+		this.rgbColor = rgbColor;
+		this.distance = distance;
+	}
+
+	public SimpleVector getPosition() {
+		return position;
+	}
+
+	public SimpleVector getRgbColor() {
+		return rgbColor;
+	}
+
+	public float getDistance() {
+		return distance;
+	}
+
+	public void setPosition(SimpleVector position) {
+		this.position = position;
+	}
+
+	public void setRgbColor(SimpleVector rgbColor) {
+		this.rgbColor = rgbColor;
+	}
+
+	public void setDistance(float distance) {
+		this.distance = distance;
+	}
+}
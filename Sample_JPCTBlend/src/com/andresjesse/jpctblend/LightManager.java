@@ -0,0 +1,282 @@
+package com.andresjesse.jpctblend;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+import com.threed.jpct.SimpleVector;
+import com.threed.jpct.util.Light;
+
+/**
+ * Light Manager, lights just the most influential scene lights around the
+ * camera. JPCT lights cost per vertex work and a world holds a limited
+ * number of them (see Config.maxLights), so instead of one JPCT light per
+ * scene light, the scene gets a few JPCT lights (the max lights) and this
+ * moves them to the scene lights that matter most at the camera position.
+ *
+ * Scene lights are kept in a grid of square cells (XZ plane); only the
+ * cells within the light radius of the camera are searched. The influence of
+ * a light is its brightness (color times the exported distance) scaled down
+ * by its distance to the camera, relative to its attenuation. Lights that
+ * stay selected keep their JPCT light. See
+ * {@link SceneLoadOptions#setMaxLights(int)}.
+ *
+ * @author andres
+ *
+ */
+public class LightManager {
+	private List<LightInfo> infos;
+
+	private float radius;
+	private float cellSize;
+	private int interval;
+
+	// light indexes of each cell
+	private HashMap<Long, ArrayList<Integer>> cells = new HashMap<Long, ArrayList<Integer>>();
+
+	// brightness and attenuation of each light
+	private float[] brightness;
+	private float[] attenuations;
+
+	// jpct lights (null while the scene is not in the world) and the light
+	// given to each of them (-1 = disabled)
+	private List<Light> slots;
+	private int[] slotLights;
+
+	// slot of each light (-1 = not lit), and the selection that chose it
+	private int[] lightSlots;
+	private int[] selected;
+	private int selection = 0;
+
+	// best lights of the current selection, most influential first
+	private int[] best;
+	private float[] bestInfluence;
+	private int bestCount;
+
+	private long frame = 0;
+
+	// camera position of the last selection (null = select again)
+	private SimpleVector selectedAt;
+
+	/**
+	 * @param infos
+	 *            scene lights
+	 * @param options
+	 *            max lights, light radius and interval
+	 */
+	LightManager(List<LightInfo> infos, SceneLoadOptions options) {
+		this.infos = infos;
+
+		radius = options.getLightRadius();
+		cellSize = radius / 2;
+		if (radius <= 0)
+			throw new RuntimeException(
+					"JPCTBlend error: the light radius must be positive!");
+
+		interval = Math.max(1, options.getLightInterval());
+
+		int count = Math.min(options.getMaxLights(), infos.size());
+		best = new int[count];
+		bestInfluence = new float[count];
+		slotLights = new int[count];
+
+		brightness = new float[infos.size()];
+		attenuations = new float[infos.size()];
+		lightSlots = new int[infos.size()];
+		selected = new int[infos.size()];
+		Arrays.fill(lightSlots, -1);
+		Arrays.fill(selected, -1);
+
+		for (int i = 0; i < infos.size(); i++) {
+			LightInfo info = infos.get(i);
+			SimpleVector color = info.getRgbColor();
+
+			brightness[i] = (color.x + color.y + color.z)
+					* info.getDistance() * 2.5f;
+			attenuations[i] = Math.max(info.getDistance() * 0.2f, 0.0001f);
+
+			cellLights(cell(info.getPosition().x), cell(info.getPosition().z))
+					.add(i);
+		}
+	}
+
+	private int cell(float coordinate) {
+		return (int) Math.floor(coordinate / cellSize);
+	}
+
+	private ArrayList<Integer> cellLights(int x, int z) {
+		long key = SceneCell.key(x, z);
+		ArrayList<Integer> list = cells.get(key);
+		if (list == null) {
+			list = new ArrayList<Integer>();
+			cells.put(key, list);
+		}
+		return list;
+	}
+
+	/**
+	 * @return number of JPCT lights the scene needs (max lights, or less if
+	 *         the scene has less lights)
+	 */
+	int getSlotCount() {
+		return slotLights.length;
+	}
+
+	/**
+	 * Starts managing the JPCT lights of the scene (once it is in the world).
+	 *
+	 * @param lights
+	 *            {@link #getSlotCount()} disabled lights
+	 */
+	void attach(List<Light> lights) {
+		slots = lights;
+		Arrays.fill(slotLights, -1);
+		Arrays.fill(lightSlots, -1);
+		selectedAt = null;
+	}
+
+	/**
+	 * Stops managing the lights (they are disposed by the scene).
+	 */
+	void detach() {
+		slots = null;
+	}
+
+	/**
+	 * Selects the lights again, if the interval passed and the camera moved.
+	 *
+	 * @param camera
+	 *            camera position
+	 */
+	void update(SimpleVector camera) {
+		if (slots == null || frame++ % interval != 0)
+			return;
+
+		if (selectedAt != null && selectedAt.equals(camera))
+			return;
+
+		if (selectedAt == null)
+			selectedAt = new SimpleVector(camera);
+		else
+			selectedAt.set(camera);
+
+		select(camera);
+		assign();
+	}
+
+	/**
+	 * Finds the most influential lights in the cells around the camera.
+	 */
+	private void select(SimpleVector camera) {
+		selection++;
+		bestCount = 0;
+
+		int reach = (int) Math.ceil(radius / cellSize);
+		int cx = cell(camera.x);
+		int cz = cell(camera.z);
+
+		for (int x = cx - reach; x <= cx + reach; x++) {
+			for (int z = cz - reach; z <= cz + reach; z++) {
+				ArrayList<Integer> lights = cells.get(SceneCell.key(x, z));
+				if (lights == null)
+					continue;
+
+				for (int k = 0; k < lights.size(); k++)
+					consider(lights.get(k), camera);
+			}
+		}
+
+		for (int k = 0; k < bestCount; k++)
+			selected[best[k]] = selection;
+	}
+
+	/**
+	 * Inserts a light in the best lights, if it is within the radius and
+	 * more influential than the least of them.
+	 */
+	private void consider(int light, SimpleVector camera) {
+		SimpleVector pos = infos.get(light).getPosition();
+		float dx = pos.x - camera.x;
+		float dy = pos.y - camera.y;
+		float dz = pos.z - camera.z;
+		float distance = (float) Math.sqrt(dx * dx + dy * dy + dz * dz);
+
+		if (distance > radius)
+			return;
+
+		float influence = brightness[light] * attenuations[light]
+				/ (attenuations[light] + distance);
+
+		if (bestCount == best.length
+				&& influence <= bestInfluence[bestCount - 1])
+			return;
+
+		int k = bestCount < best.length ? bestCount++ : bestCount - 1;
+		while (k > 0 && bestInfluence[k - 1] < influence) {
+			best[k] = best[k - 1];
+			bestInfluence[k] = bestInfluence[k - 1];
+			k--;
+		}
+		best[k] = light;
+		bestInfluence[k] = influence;
+	}
+
+	/**
+	 * Frees the slots of the lights no longer selected, then gives the free
+	 * slots to the newly selected lights. Unused slots are disabled.
+	 */
+	private void assign() {
+		for (int s = 0; s < slotLights.length; s++) {
+			int light = slotLights[s];
+			if (light >= 0 && selected[light] != selection) {
+				lightSlots[light] = -1;
+				slotLights[s] = -1;
+			}
+		}
+
+		int s = 0;
+		for (int k = 0; k < bestCount; k++) {
+			int light = best[k];
+			if (lightSlots[light] >= 0)
+				continue;
+
+			while (slotLights[s] >= 0)
+				s++;
+
+			Light slot = slots.get(s);
+			JPCTBlendScene.configureLight(slot, infos.get(light));
+			slot.enable();
+
+			slotLights[s] = light;
+			lightSlots[light] = s;
+		}
+
+		for (s = 0; s < slotLights.length; s++) {
+			Light slot = slots.get(s);
+			if (slotLights[s] < 0 && slot.isEnabled())
+				slot.disable();
+		}
+	}
+
+	/**
+	 * @return number of scene lights lit now
+	 */
+	public int getLitCount() {
+		int count = 0;
+		for (int light : slotLights)
+			if (light >= 0)
+				count++;
+		return count;
+	}
+
+	/**
+	 * @param light
+	 *            scene light index (order of the point lights in the scene
+	 *            file)
+	 * @return true if the light is lit now
+	 */
+	public boolean isLit(int light) {
+		return lightSlots[light] >= 0;
+	}
+}
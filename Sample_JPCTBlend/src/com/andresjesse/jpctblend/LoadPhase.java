@@ -0,0 +1,25 @@
+package com.andresjesse.jpctblend;
+
+/**
+ * Scene loading phases, reported to an {@link ISceneLoadListener} and timed
+ * by {@link SceneLoadStats}.
+ * 
+ * @author andres
+ * 
+ */
+public enum LoadPhase {
+	/** xml (or compiled scene) parsing */
+	PARSE,
+	/** texture decoding */
+	TEXTURES,
+	/** point lights */
+	LIGHTS,
+	/** mesh loading and instances creation */
+	INSTANCES,
+	/** static batching (see SceneLoadOptions.setBatching) */
+	BATCHES,
+	/** actors creation */
+	ACTORS,
+	/** adding the scene to the world (just timed, no progress reported) */
+	ADD_TO_WORLD
+}
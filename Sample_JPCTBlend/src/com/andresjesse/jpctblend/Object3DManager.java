@@ -1,7 +1,21 @@
 package com.andresjesse.jpctblend;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
 
+import com.threed.jpct.Loader;
+import com.threed.jpct.Mesh;
 import com.threed.jpct.Object3D;
 
 /**
@@ -9,42 +23,549 @@ import com.threed.jpct.Object3D;
  * It avoids to load more than one time the same 3D Object from disk by
  * performing clone. Similar to JPCT TextureManager.
  * 
+ * Loads are single flight: while a mesh is being loaded (possibly by another
+ * thread) every request for the same key waits for that load instead of
+ * reading the file again.
+ * 
+ * Each scene holds one reference to every mesh it uses. When the last
+ * reference is released the mesh is removed, or, if a memory budget is set,
+ * kept until the unreferenced meshs use more than the budget (the least
+ * recently used are evicted first). Prefetched meshs are never evicted until
+ * acquired by the one that prefetched them (or the prefetch is cancelled).
+ * Pins are counted, so a scene only takes over its own prefetch.
+ * 
  * @author andres
  * 
  */
 public class Object3DManager {
 
-	private HashMap<String, Object3D> loadedObjects;
+	/**
+	 * JPCT gives ids to new objects from an unsynchronized counter, so every
+	 * Object3D created by JPCTBlend off the main thread (mesh loads, clones)
+	 * is created holding this lock. Files are still read in parallel.
+	 */
+	static final Object JPCT_LOCK = new Object();
+
+	/**
+	 * A loaded object and the number of scenes using it.
+	 */
+	private static class Entry {
+		Object3D object;
+		int references;
+		long bytes;
+	}
+
+	// access ordered: iteration starts at the least recently used
+	private LinkedHashMap<String, Entry> loadedObjects;
+
+	// estimated bytes of all loaded objects
+	private long memoryUsage = 0;
+	// max bytes kept by unreferenced objects (0 = remove them at once)
+	private long memoryBudget = 0;
+
+	// prefetches not acquired yet, by key (their objects are not evicted)
+	private HashMap<String, Integer> prefetchPins;
+
+	private long hits = 0;
+	private long misses = 0;
+	private long evictions = 0;
+
+	// loads in progress, by key
+	private ConcurrentHashMap<String, FutureTask<Object3D>> pendingObjects;
 
 	private static Object3DManager instance = null;
 
-	public static Object3DManager getInstance() {
+	public static synchronized Object3DManager getInstance() {
 		if (instance == null)
 			instance = new Object3DManager();
 		return instance;
 	}
 
 	private Object3DManager() {
-		loadedObjects = new HashMap<>();
+		loadedObjects = new LinkedHashMap<>(16, 0.75f, true);
+		pendingObjects = new ConcurrentHashMap<>();
+		prefetchPins = new HashMap<>();
 	}
 
-	public boolean containsObject3D(String key) {
+	public synchronized boolean containsObject3D(String key) {
 		return loadedObjects.containsKey(key);
 	}
 
-	public Object3D getObject3D(String key) {
+	public synchronized Object3D getObject3D(String key) {
 		if (!loadedObjects.containsKey(key))
 			throw new RuntimeException(
 					"Error: Object3DManager does not contains " + key);
-		return loadedObjects.get(key);
+		return loadedObjects.get(key).object;
 	}
 
-	public void putObject3D(String key, Object3D value) {
-		if (!loadedObjects.containsKey(key))
-			loadedObjects.put(key, value);
+	public synchronized void putObject3D(String key, Object3D value) {
+		if (!loadedObjects.containsKey(key)) {
+			Entry entry = new Entry();
+			entry.object = value;
+			entry.bytes = estimateBytes(value);
+
+			loadedObjects.put(key, entry);
+			memoryUsage += entry.bytes;
+		}
 	}
 
-	public int size() {
+	public synchronized int size() {
 		return loadedObjects.size();
 	}
+
+	/**
+	 * Adds a reference to a loaded object, so it is not removed until
+	 * released.
+	 * 
+	 * @param key
+	 *            object key
+	 * @return true if the object is loaded (and now referenced)
+	 */
+	public synchronized boolean retainObject3D(String key) {
+		Entry entry = loadedObjects.get(key);
+		if (entry == null)
+			return false;
+
+		entry.references++;
+		return true;
+	}
+
+	/**
+	 * Loads (if needed) and retains an object. Prefetches of the key are left
+	 * pinned (see {@link #acquirePrefetchedObject3D(String, String)}).
+	 * 
+	 * @param key
+	 *            object key
+	 * @param filename
+	 *            3DS file
+	 * @return the loaded object (do not add it to the world, clone it)
+	 */
+	public Object3D acquireObject3D(String key, String filename) {
+		return acquireObject3D(key, filename, null, false);
+	}
+
+	/**
+	 * Same as {@link #acquireObject3D(String, String)}, for a key the caller
+	 * prefetched: this reference takes over one of its pins (and the load is
+	 * not counted again as a hit or miss).
+	 * 
+	 * @param key
+	 *            object key given to
+	 *            {@link #prefetchObject3D(String, String, Executor)}
+	 * @param filename
+	 *            3DS file
+	 * @return the loaded object (do not add it to the world, clone it)
+	 */
+	public Object3D acquirePrefetchedObject3D(String key, String filename) {
+		return acquireObject3D(key, filename, null, true);
+	}
+
+	/**
+	 * Same as {@link #acquireObject3D(String, String)}, recording the load
+	 * (or the cache hit) as an INSTANCES asset.
+	 * 
+	 * @param stats
+	 *            load stats of the scene (null for none)
+	 * @param prefetched
+	 *            the caller prefetched the key (takes over one pin)
+	 */
+	Object3D acquireObject3D(String key, String filename, SceneLoadStats stats,
+			boolean prefetched) {
+		// a cancelled prefetch has no pin left to take over
+		prefetched = prefetched && isPrefetched(key);
+
+		// hit or miss counted once, not again on retries
+		boolean counted = !prefetched;
+		while (true) {
+			Object3D obj = loadObject3D(key, filename, stats, counted);
+			counted = false;
+
+			// evicted between load and retain, very unlikely
+			if (retainObject3D(key, prefetched))
+				return obj;
+		}
+	}
+
+	private synchronized boolean isPrefetched(String key) {
+		return prefetchPins.containsKey(key);
+	}
+
+	/**
+	 * Same as {@link #retainObject3D(String)}, taking over a prefetch pin.
+	 */
+	private synchronized boolean retainObject3D(String key, boolean prefetched) {
+		if (!retainObject3D(key))
+			return false;
+
+		if (prefetched)
+			unpin(key);
+		return true;
+	}
+
+	private void unpin(String key) {
+		Integer pins = prefetchPins.get(key);
+		if (pins == null)
+			return;
+
+		if (pins > 1)
+			prefetchPins.put(key, pins - 1);
+		else
+			prefetchPins.remove(key);
+	}
+
+	/**
+	 * Releases a reference added by {@link #retainObject3D(String)} or
+	 * {@link #acquireObject3D(String, String)}.
+	 * 
+	 * @param key
+	 *            object key
+	 */
+	public synchronized void releaseObject3D(String key) {
+		Entry entry = loadedObjects.get(key);
+		if (entry == null || entry.references == 0)
+			throw new RuntimeException("Error: Object3DManager: " + key
+					+ " released more times than retained!");
+
+		entry.references--;
+		trim();
+	}
+
+	/**
+	 * Evicts unreferenced objects (least recently used first) until they fit
+	 * in the memory budget.
+	 */
+	private void trim() {
+		long unreferenced = 0;
+		for (Map.Entry<String, Entry> e : loadedObjects.entrySet())
+			if (isEvictable(e))
+				unreferenced += e.getValue().bytes;
+
+		Iterator<Map.Entry<String, Entry>> it = loadedObjects.entrySet()
+				.iterator();
+		while (unreferenced > memoryBudget && it.hasNext()) {
+			Map.Entry<String, Entry> e = it.next();
+			if (isEvictable(e)) {
+				Entry entry = e.getValue();
+				it.remove();
+				unreferenced -= entry.bytes;
+				memoryUsage -= entry.bytes;
+				evictions++;
+			}
+		}
+	}
+
+	private boolean isEvictable(Map.Entry<String, Entry> e) {
+		return e.getValue().references == 0
+				&& !prefetchPins.containsKey(e.getKey());
+	}
+
+	/**
+	 * Rough size of a mesh: vertex coordinates and normals, plus per triangle
+	 * indexes and texture coordinates.
+	 */
+	private static long estimateBytes(Object3D obj) {
+		Mesh mesh = obj.getMesh();
+		return mesh.getUniqueVertexCount() * 24L + mesh.getTriangleCount()
+				* 3L * 12L;
+	}
+
+	/**
+	 * @return estimated bytes used by an instance that does not share the
+	 *         mesh nor the compiled data (position, normal and uv for each
+	 *         compiled vertex)
+	 */
+	static long estimateInstanceBytes(Object3D obj) {
+		return estimateBytes(obj) + obj.getMesh().getTriangleCount() * 3L
+				* 32L;
+	}
+
+	/**
+	 * @return estimated bytes used by all loaded objects
+	 */
+	public synchronized long getMemoryUsage() {
+		return memoryUsage;
+	}
+
+	public synchronized long getMemoryBudget() {
+		return memoryBudget;
+	}
+
+	/**
+	 * @param memoryBudget
+	 *            max (estimated) bytes kept by objects no scene is using. 0
+	 *            removes them as soon as they are released.
+	 */
+	public synchronized void setMemoryBudget(long memoryBudget) {
+		this.memoryBudget = memoryBudget;
+		trim();
+	}
+
+	/**
+	 * @return loads served by an object already loaded (or being loaded)
+	 */
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	/**
+	 * @return loads that had to read the file
+	 */
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * @return unreferenced objects removed
+	 */
+	public synchronized long getEvictions() {
+		return evictions;
+	}
+
+	public synchronized void resetCounters() {
+		hits = 0;
+		misses = 0;
+		evictions = 0;
+	}
+
+	/**
+	 * Clones a loaded object. The clone shares the mesh with the loaded
+	 * object, it just gets his own (cleared) transformations.
+	 * 
+	 * @param key
+	 *            loaded object key
+	 * @return the clone
+	 */
+	public Object3D cloneObject3D(String key) {
+		if (!containsObject3D(key))
+			throw new RuntimeException("Can't clone mesh " + key
+					+ " because it does not exist in Object3DManager.");
+
+		Object3D cloned;
+		synchronized (JPCT_LOCK) {
+			cloned = getObject3D(key).cloneObject();
+		}
+		cloned.clearRotation();
+		cloned.clearTranslation();
+		cloned.setScale(1);
+
+		return cloned;
+	}
+
+	/**
+	 * Copies a loaded object. Unlike {@link #cloneObject3D(String)} the copy
+	 * gets his own mesh, so it can be modified (e.g. transformed and merged).
+	 * 
+	 * @param key
+	 *            loaded object key
+	 * @return the copy
+	 */
+	public Object3D copyObject3D(String key) {
+		if (!containsObject3D(key))
+			throw new RuntimeException("Can't copy mesh " + key
+					+ " because it does not exist in Object3DManager.");
+
+		Object3D copy;
+		synchronized (JPCT_LOCK) {
+			copy = new Object3D(getObject3D(key), false);
+		}
+		copy.clearRotation();
+		copy.clearTranslation();
+		copy.setScale(1);
+
+		return copy;
+	}
+
+	/**
+	 * Starts loading a 3DS file in background, unless it is already loaded or
+	 * being loaded. The object is kept (even with no memory budget) until the
+	 * caller's {@link #acquirePrefetchedObject3D(String, String)} of the key,
+	 * or until {@link #cancelPrefetch(String)}. Each prefetch adds a pin, so
+	 * prefetches of the same key by several scenes are kept until all of them
+	 * are acquired or cancelled.
+	 * 
+	 * @param key
+	 *            object key
+	 * @param filename
+	 *            3DS file
+	 * @param executor
+	 *            executor used to load the file
+	 */
+	public void prefetchObject3D(String key, String filename, Executor executor) {
+		prefetchObject3D(key, filename, executor, null);
+	}
+
+	/**
+	 * Same as {@link #prefetchObject3D(String, String, Executor)}, recording
+	 * the load (or the cache hit) as an INSTANCES asset.
+	 * 
+	 * @param stats
+	 *            load stats of the scene (null for none)
+	 */
+	void prefetchObject3D(String key, String filename, Executor executor,
+			SceneLoadStats stats) {
+		synchronized (this) {
+			Integer pins = prefetchPins.get(key);
+			prefetchPins.put(key, pins == null ? 1 : pins + 1);
+		}
+
+		FutureTask<Object3D> task = requestLoad(key, filename, stats, true);
+		if (task != null)
+			executor.execute(task);
+	}
+
+	/**
+	 * Drops a prefetch that will not be acquired (the object may be evicted
+	 * from now on).
+	 * 
+	 * @param key
+	 *            object key given to
+	 *            {@link #prefetchObject3D(String, String, Executor)}
+	 */
+	public synchronized void cancelPrefetch(String key) {
+		unpin(key);
+		trim();
+	}
+
+	/**
+	 * Loads a 3DS file (just the first object, blender exports one object per
+	 * file), or waits for the load if it was already started. Nothing is read
+	 * when the key is already loaded.
+	 * 
+	 * @param key
+	 *            object key
+	 * @param filename
+	 *            3DS file
+	 * @return the loaded object (do not add it to the world, clone it)
+	 */
+	public Object3D loadObject3D(String key, String filename) {
+		return loadObject3D(key, filename, null, true);
+	}
+
+	/**
+	 * @param counted
+	 *            count the load as a hit or miss (false for prefetched
+	 *            objects, already counted)
+	 */
+	private Object3D loadObject3D(String key, String filename,
+			SceneLoadStats stats, boolean counted) {
+		FutureTask<Object3D> task;
+		while (true) {
+			task = requestLoad(key, filename, stats, counted);
+			if (task != null) {
+				task.run();
+				break;
+			}
+			// already counted, don't count the retries
+			counted = false;
+
+			synchronized (this) {
+				Entry entry = loadedObjects.get(key);
+				if (entry != null)
+					return entry.object;
+			}
+
+			task = pendingObjects.get(key);
+			if (task != null)
+				break;
+
+			// finished meanwhile, but failed (or was evicted): request it
+			// again, so a failure is thrown with its cause
+		}
+
+		try {
+			return task.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(
+					"JPCTBlend error: interrupted while loading " + filename, e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException("JPCTBlend error: Can't load mesh "
+					+ filename, e.getCause());
+		}
+	}
+
+	private void countHit(String key, SceneLoadStats stats) {
+		synchronized (this) {
+			hits++;
+		}
+		if (stats != null)
+			stats.assetCached(LoadPhase.INSTANCES, key);
+	}
+
+	private synchronized void countMiss() {
+		misses++;
+	}
+
+	/**
+	 * @param stats
+	 *            records the read (by the thread running the task) or the hit,
+	 *            null for none
+	 * @param counted
+	 *            count the hit or miss
+	 * @return a new load task, if the caller must run it. null if the object
+	 *         is loaded or some other caller is already loading it.
+	 */
+	private FutureTask<Object3D> requestLoad(final String key,
+			final String filename, final SceneLoadStats stats, boolean counted) {
+		boolean loaded;
+		synchronized (this) {
+			// get (not contains) so the entry becomes most recently used
+			loaded = loadedObjects.get(key) != null;
+		}
+		if (loaded) {
+			if (counted)
+				countHit(key, stats);
+			return null;
+		}
+
+		FutureTask<Object3D> task = new FutureTask<Object3D>(
+				new Callable<Object3D>() {
+					@Override
+					public Object3D call() throws IOException {
+						long wallStart = System.nanoTime();
+						long cpuStart = SceneLoadStats.cpuTime();
+						if (stats != null)
+							stats.assetStarted(LoadPhase.INSTANCES, key);
+
+						try {
+							byte[] data = Files.readAllBytes(Paths.get(filename));
+
+							Object3D obj;
+							synchronized (JPCT_LOCK) {
+								obj = Loader.load3DS(new ByteArrayInputStream(
+										data), 1.0f)[0];
+							}
+
+							putObject3D(key, obj);
+
+							if (stats != null)
+								stats.assetFinished(LoadPhase.INSTANCES, key,
+										data.length, System.nanoTime()
+												- wallStart,
+										SceneLoadStats.cpuTime() - cpuStart);
+							return obj;
+						} finally {
+							pendingObjects.remove(key);
+						}
+					}
+				});
+
+		if (pendingObjects.putIfAbsent(key, task) != null) {
+			if (counted)
+				countHit(key, stats);
+			return null;
+		}
+
+		// loaded between the first check and the put
+		if (containsObject3D(key)) {
+			pendingObjects.remove(key);
+			if (counted)
+				countHit(key, stats);
+			return null;
+		}
+
+		if (counted)
+			countMiss();
+		return task;
+	}
 }
@@ -0,0 +1,40 @@
+package com.andresjesse.jpctblend;
+
+import java.util.ArrayList;
+
+import com.threed.jpct.Object3D;
+
+/**
+ * A cell of the scene grid (see {@link CellStreamer}): the instances placed
+ * inside a square of the XZ plane, and their objects while the cell is loaded.
+ * 
+ * @author andres
+ * 
+ */
+class SceneCell {
+	static final int UNLOADED = 0;
+	static final int LOADING = 1;
+	static final int LOADED = 2;
+	// the load failed (reset to UNLOADED when the cell is unloaded)
+	static final int FAILED = 3;
+
+	final int x;
+	final int z;
+
+	// indexes of the scene instances inside this cell
+	final ArrayList<Integer> instanceIndexes = new ArrayList<Integer>();
+
+	int state = UNLOADED;
+
+	// current load (null when unloaded)
+	CellStreamer.CellLoad load;
+
+	SceneCell(int x, int z) {
+		this.x = x;
+		this.z = z;
+	}
+
+	static long key(int x, int z) {
+		return ((long) x << 32) | (z & 0xFFFFFFFFL);
+	}
+}
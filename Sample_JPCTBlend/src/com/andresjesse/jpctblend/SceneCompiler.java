@@ -0,0 +1,289 @@
+package com.andresjesse.jpctblend;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.xml.sax.SAXException;
+
+import com.threed.jpct.SimpleVector;
+
+/**
+ * Offline scene compiler. Converts a scene xml (exported by blender) into a
+ * compiled scene, that can be loaded by JPCTBlendScene without parsing any
+ * xml. The compiled file must be placed in the same folder as the xml, since
+ * "textures" and "meshs" are still loaded from there. See
+ * {@link CompiledScene} for the file layout.
+ *
+ * Usage: SceneCompiler scene.xml [scene.jbs]
+ *
+ * @author andres
+ *
+ */
+public class SceneCompiler {
+
+	// strings are stored once, in the order they are found
+	private Map<String, Integer> stringTable = new LinkedHashMap<String, Integer>();
+
+	private ExporterInfo exporterInfo;
+	private int[] textures;
+	private SimpleVector ambientLight;
+	private ArrayList<float[]> lights = new ArrayList<float[]>();
+	private ArrayList<float[]> cameras = new ArrayList<float[]>();
+	private ArrayList<Node> instances = new ArrayList<Node>();
+	private ArrayList<Node> actors = new ArrayList<Node>();
+
+	/**
+	 * @param args
+	 *            scene xml filename and (optional) output filename
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1) {
+			System.err.println("Usage: SceneCompiler scene.xml [scene"
+					+ CompiledScene.FILE_EXTENSION + "]");
+			System.exit(1);
+		}
+
+		String out = args.length > 1 ? args[1] : defaultOutput(args[0]);
+
+		compile(args[0], out);
+		System.out.println("JPCTBlend: compiled " + args[0] + " to " + out);
+	}
+
+	/**
+	 * Compiles a scene xml.
+	 *
+	 * @param sceneFilename
+	 *            scene xml filename
+	 * @param outFilename
+	 *            compiled scene filename
+	 * @throws IOException
+	 *             if the xml can't be read or the output can't be written
+	 */
+	public static void compile(String sceneFilename, String outFilename)
+			throws IOException {
+		DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+		factory.setNamespaceAware(true);
+
+		Document doc;
+		try {
+			doc = factory.newDocumentBuilder().parse(sceneFilename);
+		} catch (ParserConfigurationException | SAXException e) {
+			throw new IOException("JPCTBlend error: can't parse "
+					+ sceneFilename, e);
+		}
+
+		SceneCompiler compiler = new SceneCompiler();
+		compiler.parseRoot(doc.getFirstChild());
+
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+				new FileOutputStream(outFilename)));
+		try {
+			compiler.write(out);
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * @return the xml filename with the compiled extension
+	 */
+	static String defaultOutput(String sceneFilename) {
+		int dot = sceneFilename.lastIndexOf('.');
+		if (dot > sceneFilename.lastIndexOf('/'))
+			sceneFilename = sceneFilename.substring(0, dot);
+		return sceneFilename + CompiledScene.FILE_EXTENSION;
+	}
+
+	// =================================================================Parsers
+
+	private void parseRoot(Node xmlRoot) {
+		Node xmlInfo = JPCTBlendScene.findSubNode("exporter_info", xmlRoot);
+		exporterInfo = new ExporterInfo(
+				JPCTBlendScene.getAttrValue("author", xmlInfo),
+				JPCTBlendScene.getAttrValue("contact", xmlInfo),
+				JPCTBlendScene.getAttrValueDate("date", xmlInfo),
+				JPCTBlendScene.getAttrValue("script", xmlInfo),
+				JPCTBlendScene.getAttrValueInteger("version", xmlInfo));
+
+		ArrayList<Node> textureNodes = elements(JPCTBlendScene.findSubNode(
+				"textures", xmlRoot), null);
+		textures = new int[textureNodes.size()];
+		for (int i = 0; i < textures.length; i++)
+			textures[i] = intern(textureNodes.get(i).getNodeName());
+
+		Node xmlLights = JPCTBlendScene.findSubNode("lights", xmlRoot);
+		for (Node node : elements(xmlLights, "pointlight")) {
+			SimpleVector pos = JPCTBlendScene.getAttrValueSimpleVector(
+					"position", node);
+			SimpleVector rgb = JPCTBlendScene.getAttrValueSimpleVector(
+					"rgbcolor", node);
+			lights.add(new float[] { pos.x, pos.y, pos.z, rgb.x, rgb.y, rgb.z,
+					JPCTBlendScene.getAttrValueFloat("distance", node) });
+		}
+		for (Node node : elements(xmlLights, "ambient"))
+			ambientLight = JPCTBlendScene.getAttrValueSimpleVector("rgbcolor",
+					node);
+
+		Node xmlCamera = JPCTBlendScene.findSubNode("camera", xmlRoot);
+		if (xmlCamera != null) {
+			SimpleVector lookAt = JPCTBlendScene.getAttrValueSimpleVector(
+					"lookat", xmlCamera);
+			SimpleVector pos = JPCTBlendScene.getAttrValueSimpleVector(
+					"position", xmlCamera);
+			cameras.add(new float[] { lookAt.x, lookAt.y, lookAt.z, pos.x,
+					pos.y, pos.z });
+		}
+
+		instances = elements(JPCTBlendScene.findSubNode("instances", xmlRoot),
+				"instance");
+		for (Node node : instances) {
+			intern(JPCTBlendScene.getAttrValue("mesh_name", node));
+			intern(JPCTBlendScene.getAttrValue("texture", node));
+		}
+
+		actors = elements(JPCTBlendScene.findSubNode("actors", xmlRoot),
+				"actor");
+		for (Node node : actors)
+			intern(JPCTBlendScene.getAttrValue("javaclass", node));
+	}
+
+	/**
+	 * @return all element childs of a node (filtered by name, if not null)
+	 */
+	private static ArrayList<Node> elements(Node parent, String name) {
+		ArrayList<Node> list = new ArrayList<Node>();
+		if (parent == null)
+			return list;
+
+		NodeList childs = parent.getChildNodes();
+		for (int i = 0, len = childs.getLength(); i < len; i++) {
+			Node node = childs.item(i);
+			if (node.getNodeType() == Node.ELEMENT_NODE
+					&& (name == null || node.getNodeName().equals(name)))
+				list.add(node);
+		}
+		return list;
+	}
+
+	private int intern(String value) {
+		if (value == null)
+			return CompiledScene.NO_STRING;
+
+		Integer index = stringTable.get(value);
+		if (index == null) {
+			index = stringTable.size();
+			stringTable.put(value, index);
+		}
+		return index;
+	}
+
+	// =================================================================Writer
+
+	private void write(DataOutputStream out) throws IOException {
+		int author = intern(exporterInfo.getAuthor());
+		int contact = intern(exporterInfo.getContact());
+		int script = intern(exporterInfo.getScript());
+
+		out.writeInt(CompiledScene.MAGIC);
+		out.writeInt(CompiledScene.FORMAT_VERSION);
+
+		// string table
+		out.writeInt(stringTable.size());
+		for (String value : stringTable.keySet()) {
+			byte[] bytes = value.getBytes(CompiledScene.UTF8);
+			out.writeInt(bytes.length);
+			out.write(bytes);
+		}
+		while (out.size() != CompiledScene.align(out.size()))
+			out.writeByte(0);
+
+		// exporter info
+		out.writeInt(author);
+		out.writeInt(contact);
+		out.writeInt(script);
+		Date date = exporterInfo.getDate();
+		out.writeLong(date == null ? CompiledScene.NO_DATE : date.getTime());
+		out.writeInt(exporterInfo.getVersion());
+
+		// textures
+		out.writeInt(textures.length);
+		for (int texture : textures)
+			out.writeInt(texture);
+
+		// ambient light
+		out.writeInt(ambientLight != null ? 1 : 0);
+		writeVector(out, ambientLight != null ? ambientLight
+				: new SimpleVector());
+
+		// lights
+		out.writeInt(lights.size());
+		for (float[] light : lights)
+			writeFloats(out, light, 0, 3);
+		for (float[] light : lights)
+			writeFloats(out, light, 3, 3);
+		for (float[] light : lights)
+			out.writeFloat(light[6]);
+
+		// cameras
+		out.writeInt(cameras.size());
+		for (float[] camera : cameras)
+			writeFloats(out, camera, 0, 3);
+		for (float[] camera : cameras)
+			writeFloats(out, camera, 3, 3);
+
+		// instances
+		out.writeInt(instances.size());
+		for (Node node : instances)
+			out.writeInt(intern(JPCTBlendScene.getAttrValue("mesh_name", node)));
+		for (Node node : instances)
+			out.writeInt(intern(JPCTBlendScene.getAttrValue("texture", node)));
+		writeVectors(out, instances, "position");
+		writeVectors(out, instances, "rotation");
+		writeVectors(out, instances, "scale");
+
+		// actors
+		out.writeInt(actors.size());
+		for (Node node : actors)
+			out.writeInt(intern(JPCTBlendScene.getAttrValue("javaclass", node)));
+		writeVectors(out, actors, "position");
+		writeVectors(out, actors, "rotation");
+	}
+
+	private static void writeVectors(DataOutputStream out, ArrayList<Node> nodes,
+			String attr) throws IOException {
+		for (Node node : nodes) {
+			SimpleVector vec = JPCTBlendScene.getAttrValueSimpleVector(attr,
+					node);
+			// scale is optional, all other vectors default to zero
+			if (vec == null)
+				vec = attr.equals("scale") ? new SimpleVector(1, 1, 1)
+						: new SimpleVector();
+			writeVector(out, vec);
+		}
+	}
+
+	private static void writeVector(DataOutputStream out, SimpleVector vec)
+			throws IOException {
+		out.writeFloat(vec.x);
+		out.writeFloat(vec.y);
+		out.writeFloat(vec.z);
+	}
+
+	private static void writeFloats(DataOutputStream out, float[] values,
+			int offset, int len) throws IOException {
+		for (int i = offset; i < offset + len; i++)
+			out.writeFloat(values[i]);
+	}
+}
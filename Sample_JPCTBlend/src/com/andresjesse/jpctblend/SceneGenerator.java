@@ -0,0 +1,362 @@
+package com.andresjesse.jpctblend;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Random;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+/**
+ * Synthetic scene generator, writes valid jpctblend scenes (same format as
+ * the blender exporter) of any size, to test JPCTBlend at scale. Meshs and
+ * textures are the ones of a bundled scene (the sample scene by default),
+ * copied under new names when more distinct meshs or textures are asked
+ * for. The same seed always writes the same scene.
+ *
+ * Usage: SceneGenerator output_folder [instances=1000] [uniqueMeshRatio=0.01]
+ * [textures=6] [lights=2] [actors=2] [extent=100] [seed=1]
+ * [assets=media/scenes/sample_scene]
+ *
+ * @author andres
+ *
+ */
+public class SceneGenerator {
+
+	/** Date written in the exporter info (fixed, so output is reproducible). */
+	public static final String DATE = "2026/10/17";
+
+	private int instances = 1000;
+	// distinct meshs / instances
+	private float uniqueMeshRatio = 0.01f;
+	private int textures = 6;
+	private int lights = 2;
+	private int actors = 2;
+	// side of the square (centered at the origin) where everything is placed
+	private float extent = 100;
+	private long seed = 1;
+	// scene folder whose "meshs" and "textures" are reused
+	private File assets = new File("media/scenes/sample_scene");
+	private String actorClass = "SampleActor";
+
+	/**
+	 * @param args
+	 *            output folder, then key=value options (see class doc)
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1) {
+			System.err.println("Usage: SceneGenerator output_folder"
+					+ " [instances=1000] [uniqueMeshRatio=0.01] [textures=6]"
+					+ " [lights=2] [actors=2] [extent=100] [seed=1]"
+					+ " [assets=media/scenes/sample_scene]");
+			System.exit(1);
+		}
+
+		SceneGenerator generator = new SceneGenerator();
+
+		for (int i = 1; i < args.length; i++) {
+			String[] option = args[i].split("=", 2);
+			if (option.length != 2)
+				throw new IllegalArgumentException(
+						"JPCTBlend error: options are key=value, found "
+								+ args[i]);
+			generator.setOption(option[0], option[1]);
+		}
+
+		File xml = generator.generate(new File(args[0]));
+		System.out.println("JPCTBlend: generated " + xml + " ("
+				+ generator.getInstances() + " instances)");
+	}
+
+	private void setOption(String key, String value) {
+		if (key.equals("instances"))
+			setInstances(Integer.parseInt(value));
+		else if (key.equals("uniqueMeshRatio"))
+			setUniqueMeshRatio(Float.parseFloat(value));
+		else if (key.equals("textures"))
+			setTextures(Integer.parseInt(value));
+		else if (key.equals("lights"))
+			setLights(Integer.parseInt(value));
+		else if (key.equals("actors"))
+			setActors(Integer.parseInt(value));
+		else if (key.equals("extent"))
+			setExtent(Float.parseFloat(value));
+		else if (key.equals("seed"))
+			setSeed(Long.parseLong(value));
+		else if (key.equals("assets"))
+			setAssets(new File(value));
+		else if (key.equals("actorClass"))
+			setActorClass(value);
+		else
+			throw new IllegalArgumentException(
+					"JPCTBlend error: unknown generator option " + key);
+	}
+
+	/**
+	 * Writes the scene: "scene.xml" plus the "meshs" and "textures" folders.
+	 *
+	 * @param folder
+	 *            output folder (created if needed)
+	 * @return the scene xml file
+	 * @throws IOException
+	 *             if the assets can't be copied or the xml can't be written
+	 */
+	public File generate(File folder) throws IOException {
+		Random random = new Random(seed);
+
+		File meshFolder = new File(folder, "meshs");
+		File textureFolder = new File(folder, "textures");
+		meshFolder.mkdirs();
+		textureFolder.mkdirs();
+
+		String[] meshs = copyAssets(new File(assets, "meshs"), meshFolder,
+				".3ds", getUniqueMeshCount());
+		String[] txNames = copyAssets(new File(assets, "textures"),
+				textureFolder, null, Math.max(1, textures));
+
+		File xml = new File(folder, "scene.xml");
+		OutputStream out = new BufferedOutputStream(new FileOutputStream(xml));
+		try {
+			XMLStreamWriter writer = XMLOutputFactory.newInstance()
+					.createXMLStreamWriter(out, "UTF-8");
+			write(writer, random, meshs, txNames);
+			writer.close();
+		} catch (XMLStreamException e) {
+			throw new IOException("JPCTBlend error: can't write " + xml, e);
+		} finally {
+			out.close();
+		}
+
+		return xml;
+	}
+
+	/**
+	 * @return number of distinct meshs used by the instances
+	 */
+	public int getUniqueMeshCount() {
+		return Math.max(1,
+				Math.min(instances, Math.round(instances * uniqueMeshRatio)));
+	}
+
+	/**
+	 * Copies bundled files, cycling through them (and renaming the copies)
+	 * until there are enough.
+	 *
+	 * @param from
+	 *            bundled files folder
+	 * @param to
+	 *            output folder
+	 * @param extension
+	 *            extension removed from the returned names (null to keep it)
+	 * @param count
+	 *            files needed
+	 * @return the names of the files
+	 */
+	private static String[] copyAssets(File from, File to, String extension,
+			int count) throws IOException {
+		File[] bundled = from.listFiles();
+		if (bundled == null || bundled.length == 0)
+			throw new IOException("JPCTBlend error: no assets found in "
+					+ from);
+		Arrays.sort(bundled);
+
+		String[] names = new String[count];
+
+		for (int i = 0; i < count; i++) {
+			File source = bundled[i % bundled.length];
+			String name = source.getName();
+
+			// first round keeps the bundled names
+			if (i >= bundled.length) {
+				int dot = name.lastIndexOf('.');
+				name = name.substring(0, dot) + "_" + i + name.substring(dot);
+			}
+
+			Files.copy(source.toPath(), new File(to, name).toPath(),
+					StandardCopyOption.REPLACE_EXISTING);
+
+			names[i] = extension != null && name.endsWith(extension) ? name
+					.substring(0, name.length() - extension.length()) : name;
+		}
+
+		return names;
+	}
+
+	private void write(XMLStreamWriter writer, Random random, String[] meshs,
+			String[] txNames) throws XMLStreamException {
+		writer.writeStartDocument("UTF-8", "1.0");
+		writer.writeStartElement("jpctblend_scene");
+
+		writer.writeEmptyElement("exporter_info");
+		writer.writeAttribute("author", "JPCTBlend SceneGenerator");
+		writer.writeAttribute("contact", "www.andresjesse.com");
+		writer.writeAttribute("date", DATE);
+		writer.writeAttribute("script", "JPCTBlend SceneGenerator (seed "
+				+ seed + ")");
+		writer.writeAttribute("version",
+				String.valueOf(JPCTBlendScene.IMPORTER_VERSION));
+
+		writer.writeStartElement("textures");
+		for (String txName : txNames)
+			writer.writeEmptyElement(txName);
+		writer.writeEndElement();
+
+		float half = extent / 2;
+
+		// every mesh is used once, then the instances pick them at random.
+		// Each mesh always gets the same texture.
+		writer.writeStartElement("instances");
+		for (int i = 0; i < instances; i++) {
+			int mesh = i < meshs.length ? i : random.nextInt(meshs.length);
+
+			writer.writeEmptyElement("instance");
+			writer.writeAttribute("mesh_name", meshs[mesh]);
+			writer.writeAttribute("position",
+					vector(coordinate(random, half), 0, coordinate(random, half)));
+			writer.writeAttribute("rotation",
+					vector(0, random.nextFloat() * (float) (2 * Math.PI), 0));
+			writer.writeAttribute("scale", vector(1, 1, 1));
+			writer.writeAttribute("texture", txNames[mesh % txNames.length]);
+		}
+		writer.writeEndElement();
+
+		writer.writeStartElement("lights");
+		for (int i = 0; i < lights; i++) {
+			writer.writeEmptyElement("pointlight");
+			writer.writeAttribute("distance",
+					String.valueOf(5 + random.nextFloat() * 15));
+			writer.writeAttribute("position", vector(coordinate(random, half),
+					-2 - random.nextFloat() * 8, coordinate(random, half)));
+			writer.writeAttribute("rgbcolor", vector(random.nextFloat(),
+					random.nextFloat(), random.nextFloat()));
+		}
+		writer.writeEmptyElement("ambient");
+		writer.writeAttribute("rgbcolor", vector(0.1f, 0.1f, 0.1f));
+		writer.writeEndElement();
+
+		// looking at the center, from a corner above the scene
+		writer.writeEmptyElement("camera");
+		writer.writeAttribute("lookat", vector(0, 0, 0));
+		writer.writeAttribute("position", vector(-half, -half / 2, half));
+
+		writer.writeStartElement("actors");
+		for (int i = 0; i < actors; i++) {
+			writer.writeEmptyElement("actor");
+			writer.writeAttribute("javaclass", actorClass);
+			writer.writeAttribute("position",
+					vector(coordinate(random, half), 0, coordinate(random, half)));
+			writer.writeAttribute("rotation",
+					vector(0, random.nextFloat() * (float) (2 * Math.PI), 0));
+		}
+		writer.writeEndElement();
+
+		writer.writeEndElement();
+		writer.writeEndDocument();
+	}
+
+	private static float coordinate(Random random, float half) {
+		return (random.nextFloat() * 2 - 1) * half;
+	}
+
+	private static String vector(float x, float y, float z) {
+		return x + "," + y + "," + z;
+	}
+
+	// =================================================================Options
+
+	public int getInstances() {
+		return instances;
+	}
+
+	public void setInstances(int instances) {
+		this.instances = instances;
+	}
+
+	public float getUniqueMeshRatio() {
+		return uniqueMeshRatio;
+	}
+
+	/**
+	 * @param uniqueMeshRatio
+	 *            distinct meshs / instances (0..1, at least one mesh)
+	 */
+	public void setUniqueMeshRatio(float uniqueMeshRatio) {
+		this.uniqueMeshRatio = uniqueMeshRatio;
+	}
+
+	public int getTextures() {
+		return textures;
+	}
+
+	public void setTextures(int textures) {
+		this.textures = textures;
+	}
+
+	public int getLights() {
+		return lights;
+	}
+
+	public void setLights(int lights) {
+		this.lights = lights;
+	}
+
+	public int getActors() {
+		return actors;
+	}
+
+	public void setActors(int actors) {
+		this.actors = actors;
+	}
+
+	public float getExtent() {
+		return extent;
+	}
+
+	/**
+	 * @param extent
+	 *            side of the square (centered at the origin, in the X/Z plane)
+	 *            where instances, lights and actors are placed
+	 */
+	public void setExtent(float extent) {
+		this.extent = extent;
+	}
+
+	public long getSeed() {
+		return seed;
+	}
+
+	public void setSeed(long seed) {
+		this.seed = seed;
+	}
+
+	public File getAssets() {
+		return assets;
+	}
+
+	/**
+	 * @param assets
+	 *            scene folder whose "meshs" and "textures" are reused
+	 */
+	public void setAssets(File assets) {
+		this.assets = assets;
+	}
+
+	public String getActorClass() {
+		return actorClass;
+	}
+
+	/**
+	 * @param actorClass
+	 *            java class of the actors (see ActorFactory)
+	 */
+	public void setActorClass(String actorClass) {
+		this.actorClass = actorClass;
+	}
+}
@@ -0,0 +1,355 @@
+package com.andresjesse.jpctblend;
+
+/**
+ * Scene Load Options, used to choose how JPCTBlendScene loads a scene. The
+ * default options load the scene exactly as the simple constructor does.
+ * 
+ * @author andres
+ * 
+ */
+public class SceneLoadOptions {
+	// parse the xml with a streaming (StAX) parser instead of a DOM
+	private boolean streaming = false;
+
+	// threads used to decode textures (1 = decode on the loading thread)
+	private int textureThreads = 1;
+
+	// threads used to load distinct meshs (1 = load on the loading thread)
+	private int meshThreads = 1;
+
+	// notified while the scene loads (may be null)
+	private ISceneLoadListener loadListener = null;
+
+	// gets the load times of phases and assets (may be null), see
+	// SceneLoadStats
+	private ISceneStatsListener statsListener = null;
+
+	// max time (ms) spent per frame adding/removing the scene to/from the
+	// world (0 = everything at once)
+	private float frameBudget = 0;
+
+	// notified when the scene is added/removed (may be null)
+	private ISceneTransitionListener transitionListener = null;
+
+	// notified at each update (may be null), and of actors that took longer
+	// than actTimeThreshold (ms) to act (negative = actors are not timed)
+	private ISceneUpdateListener updateListener = null;
+	private float actTimeThreshold = -1;
+
+	// keep histograms of the update times (see SceneUpdateStats)
+	private boolean updateStats = false;
+
+	// cell streaming: only cells closer than viewRadius to the camera are
+	// loaded (0 = load all instances), cells farther than unloadRadius are
+	// unloaded (0 = viewRadius + cellSize)
+	private float cellSize = 16;
+	private float viewRadius = 0;
+	private float unloadRadius = 0;
+
+	// threads used to load cells
+	private int cellThreads = 1;
+
+	// threads used by parallel actors (see IParallelActor) to act
+	private int actorThreads = 1;
+
+	// actor tiers: actors closer than distance[i] to the camera act every
+	// intervals[i] frames (0 = suspended), farther actors are suspended
+	// (null = all actors act at every frame), see ActorLod
+	private float[] actorTierDistances = null;
+	private int[] actorTierIntervals = null;
+	private float actorCellSize = 16;
+
+	// give poolable actors back to the ActorPool when the scene is removed,
+	// and take actors from there when it is loaded/added
+	private boolean actorPooling = false;
+
+	// light manager: only the maxLights most influential lights closer than
+	// lightRadius to the camera are lit, chosen again every lightInterval
+	// frames (0 = all lights are lit), see LightManager
+	private int maxLights = 0;
+	private float lightRadius = 100;
+	private int lightInterval = 1;
+
+	// instance culling: objects whose cell (of cullCellSize) is farther than
+	// cullDistance from the camera, or out of the view cone (with
+	// frustumCulling), are hidden (0 = no culling), see InstanceCuller
+	private float cullDistance = 0;
+	private float cullCellSize = 16;
+	private boolean frustumCulling = true;
+
+	// instances of the same mesh share mesh and compiled data (false = each
+	// instance gets its own copy)
+	private boolean sharedInstancing = true;
+
+	// merge instances sharing texture and transparency into a few objects,
+	// split in square cells of batchCellSize (0 = no split)
+	private boolean batching = false;
+	private float batchCellSize = 16;
+
+	public boolean isStreaming() {
+		return streaming;
+	}
+
+	public void setStreaming(boolean streaming) {
+		this.streaming = streaming;
+	}
+
+	public int getTextureThreads() {
+		return textureThreads;
+	}
+
+	public void setTextureThreads(int textureThreads) {
+		this.textureThreads = textureThreads;
+	}
+
+	public int getMeshThreads() {
+		return meshThreads;
+	}
+
+	public void setMeshThreads(int meshThreads) {
+		this.meshThreads = meshThreads;
+	}
+
+	public ISceneLoadListener getLoadListener() {
+		return loadListener;
+	}
+
+	public void setLoadListener(ISceneLoadListener loadListener) {
+		this.loadListener = loadListener;
+	}
+
+	public ISceneStatsListener getStatsListener() {
+		return statsListener;
+	}
+
+	public void setStatsListener(ISceneStatsListener statsListener) {
+		this.statsListener = statsListener;
+	}
+
+	public float getFrameBudget() {
+		return frameBudget;
+	}
+
+	public void setFrameBudget(float frameBudget) {
+		this.frameBudget = frameBudget;
+	}
+
+	public ISceneTransitionListener getTransitionListener() {
+		return transitionListener;
+	}
+
+	public void setTransitionListener(
+			ISceneTransitionListener transitionListener) {
+		this.transitionListener = transitionListener;
+	}
+
+	public ISceneUpdateListener getUpdateListener() {
+		return updateListener;
+	}
+
+	public void setUpdateListener(ISceneUpdateListener updateListener) {
+		this.updateListener = updateListener;
+	}
+
+	public float getActTimeThreshold() {
+		return actTimeThreshold;
+	}
+
+	/**
+	 * @param actTimeThreshold
+	 *            act() calls longer than this (ms) are reported to the update
+	 *            listener (0 = all of them, negative = actors are not timed)
+	 */
+	public void setActTimeThreshold(float actTimeThreshold) {
+		this.actTimeThreshold = actTimeThreshold;
+	}
+
+	public boolean isUpdateStats() {
+		return updateStats;
+	}
+
+	/**
+	 * @param updateStats
+	 *            true to keep histograms of the update, pivot fix-up and
+	 *            act() times (see JPCTBlendScene.getUpdateStats())
+	 */
+	public void setUpdateStats(boolean updateStats) {
+		this.updateStats = updateStats;
+	}
+
+	public float getCellSize() {
+		return cellSize;
+	}
+
+	public void setCellSize(float cellSize) {
+		this.cellSize = cellSize;
+	}
+
+	public float getViewRadius() {
+		return viewRadius;
+	}
+
+	public void setViewRadius(float viewRadius) {
+		this.viewRadius = viewRadius;
+	}
+
+	public float getUnloadRadius() {
+		return unloadRadius;
+	}
+
+	public void setUnloadRadius(float unloadRadius) {
+		this.unloadRadius = unloadRadius;
+	}
+
+	public int getCellThreads() {
+		return cellThreads;
+	}
+
+	public void setCellThreads(int cellThreads) {
+		this.cellThreads = cellThreads;
+	}
+
+	public boolean isBatching() {
+		return batching;
+	}
+
+	public void setBatching(boolean batching) {
+		this.batching = batching;
+	}
+
+	public float getBatchCellSize() {
+		return batchCellSize;
+	}
+
+	public void setBatchCellSize(float batchCellSize) {
+		this.batchCellSize = batchCellSize;
+	}
+
+	public boolean isSharedInstancing() {
+		return sharedInstancing;
+	}
+
+	public void setSharedInstancing(boolean sharedInstancing) {
+		this.sharedInstancing = sharedInstancing;
+	}
+
+	public int getActorThreads() {
+		return actorThreads;
+	}
+
+	public void setActorThreads(int actorThreads) {
+		this.actorThreads = actorThreads;
+	}
+
+	public float[] getActorTierDistances() {
+		return actorTierDistances;
+	}
+
+	public int[] getActorTierIntervals() {
+		return actorTierIntervals;
+	}
+
+	/**
+	 * Sets the actor tiers (e.g. distances {20, 60, 150} and intervals {1, 4,
+	 * 16}: act every frame up to 20 units from the camera, every 4th frame up
+	 * to 60, every 16th up to 150, and suspended beyond).
+	 * 
+	 * @param distances
+	 *            tier distances, ascending (null = no tiers)
+	 * @param intervals
+	 *            update interval (in frames) of each tier
+	 */
+	public void setActorTiers(float[] distances, int[] intervals) {
+		this.actorTierDistances = distances;
+		this.actorTierIntervals = intervals;
+	}
+
+	public float getActorCellSize() {
+		return actorCellSize;
+	}
+
+	public void setActorCellSize(float actorCellSize) {
+		this.actorCellSize = actorCellSize;
+	}
+
+	public boolean isActorPooling() {
+		return actorPooling;
+	}
+
+	public void setActorPooling(boolean actorPooling) {
+		this.actorPooling = actorPooling;
+	}
+
+	public int getMaxLights() {
+		return maxLights;
+	}
+
+	/**
+	 * @param maxLights
+	 *            lights lit at the same time, the most influential around
+	 *            the camera (0 = all scene lights, each one with its own JPCT
+	 *            light). Keep it below Config.maxLights.
+	 */
+	public void setMaxLights(int maxLights) {
+		this.maxLights = maxLights;
+	}
+
+	public float getLightRadius() {
+		return lightRadius;
+	}
+
+	/**
+	 * @param lightRadius
+	 *            lights farther than this from the camera are never lit (with
+	 *            max lights)
+	 */
+	public void setLightRadius(float lightRadius) {
+		this.lightRadius = lightRadius;
+	}
+
+	public int getLightInterval() {
+		return lightInterval;
+	}
+
+	/**
+	 * @param lightInterval
+	 *            frames between light selections (with max lights)
+	 */
+	public void setLightInterval(int lightInterval) {
+		this.lightInterval = lightInterval;
+	}
+
+	public float getCullDistance() {
+		return cullDistance;
+	}
+
+	/**
+	 * @param cullDistance
+	 *            instances (or batches) farther than this from the camera are
+	 *            hidden (0 = no culling). Not used with cell streaming.
+	 */
+	public void setCullDistance(float cullDistance) {
+		this.cullDistance = cullDistance;
+	}
+
+	public float getCullCellSize() {
+		return cullCellSize;
+	}
+
+	public void setCullCellSize(float cullCellSize) {
+		this.cullCellSize = cullCellSize;
+	}
+
+	public boolean isFrustumCulling() {
+		return frustumCulling;
+	}
+
+	/**
+	 * @param frustumCulling
+	 *            with a cull distance, also hide the instances out of the
+	 *            camera view (false = just by distance)
+	 */
+	public void setFrustumCulling(boolean frustumCulling) {
+		this.frustumCulling = frustumCulling;
+	}
+}
@@ -0,0 +1,228 @@
+package com.andresjesse.jpctblend;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Scene Load Stats, load measures of a scene: wall and CPU time of each
+ * {@link LoadPhase}, time and size of each asset read (scene file, textures
+ * and distinct meshs), total bytes read and cache hits (assets found already
+ * loaded, nothing read). See {@link JPCTBlendScene#getLoadStats()}; the same
+ * measures are given to the {@link ISceneStatsListener}, if any.
+ *
+ * Phase CPU times are the ones of the loading thread, work done by texture or
+ * mesh loader threads is measured in the assets. Assets loaded later (e.g.
+ * textures loaded again when a removed scene is added, or cells streamed in)
+ * are added as they are read. Times are in nanoseconds.
+ *
+ * @author andres
+ *
+ */
+public class SceneLoadStats {
+
+	/**
+	 * Load measures of one asset.
+	 */
+	public static class AssetStats {
+		private final LoadPhase phase;
+		private final String name;
+		private final long bytes;
+		private final long wallTime;
+		private final long cpuTime;
+
+		AssetStats(LoadPhase phase, String name, long bytes, long wallTime,
+				long cpuTime) {
+			this.phase = phase;
+			this.name = name;
+			this.bytes = bytes;
+			this.wallTime = wallTime;
+			this.cpuTime = cpuTime;
+		}
+
+		/**
+		 * @return PARSE for the scene file, TEXTURES or INSTANCES (meshs)
+		 */
+		public LoadPhase getPhase() {
+			return phase;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public long getBytes() {
+			return bytes;
+		}
+
+		public long getWallTime() {
+			return wallTime;
+		}
+
+		public long getCpuTime() {
+			return cpuTime;
+		}
+
+		@Override
+		public String toString() {
+			return phase + " " + name + ": " + bytes + " bytes, "
+					+ wallTime / 1000000 + " ms (cpu " + cpuTime / 1000000
+					+ " ms)";
+		}
+	}
+
+	private static final ThreadMXBean THREADS = ManagementFactory
+			.getThreadMXBean();
+
+	private final long[] wallTimes = new long[LoadPhase.values().length];
+	private final long[] cpuTimes = new long[LoadPhase.values().length];
+
+	// assets read (cached ones are just counted)
+	private final ArrayList<AssetStats> assets = new ArrayList<AssetStats>();
+	private long bytesRead = 0;
+	private int cacheHits = 0;
+
+	private final ISceneStatsListener listener;
+
+	SceneLoadStats(ISceneStatsListener listener) {
+		this.listener = listener;
+	}
+
+	/**
+	 * @return CPU time (ns) of the calling thread, 0 if not supported
+	 */
+	static long cpuTime() {
+		return THREADS.isCurrentThreadCpuTimeSupported() ? THREADS
+				.getCurrentThreadCpuTime() : 0;
+	}
+
+	// =================================================================Recording
+
+	void phaseStarted(LoadPhase phase) {
+		if (listener != null)
+			listener.onPhaseStarted(phase);
+	}
+
+	void phaseFinished(LoadPhase phase, long wallTime, long cpuTime) {
+		synchronized (this) {
+			wallTimes[phase.ordinal()] += wallTime;
+			cpuTimes[phase.ordinal()] += cpuTime;
+		}
+
+		if (listener != null)
+			listener.onPhaseFinished(phase, wallTime, cpuTime);
+	}
+
+	void assetStarted(LoadPhase phase, String name) {
+		if (listener != null)
+			listener.onAssetStarted(phase, name);
+	}
+
+	void assetFinished(LoadPhase phase, String name, long bytes,
+			long wallTime, long cpuTime) {
+		AssetStats asset = new AssetStats(phase, name, bytes, wallTime, cpuTime);
+		synchronized (this) {
+			assets.add(asset);
+			bytesRead += bytes;
+		}
+
+		if (JPCTBlendLog.isEnabled(JPCTBlendLog.LL_DEBUG))
+			JPCTBlendLog.debug(asset.toString());
+
+		if (listener != null)
+			listener.onAssetFinished(phase, name, bytes, wallTime, cpuTime,
+					false);
+	}
+
+	/**
+	 * Records an asset found already loaded (or being loaded).
+	 */
+	void assetCached(LoadPhase phase, String name) {
+		synchronized (this) {
+			cacheHits++;
+		}
+
+		if (listener != null) {
+			listener.onAssetStarted(phase, name);
+			listener.onAssetFinished(phase, name, 0, 0, 0, true);
+		}
+	}
+
+	// =================================================================Queries
+
+	/**
+	 * @return wall time (ns) spent in a phase
+	 */
+	public synchronized long getWallTime(LoadPhase phase) {
+		return wallTimes[phase.ordinal()];
+	}
+
+	/**
+	 * @return CPU time (ns) of the loading thread in a phase
+	 */
+	public synchronized long getCpuTime(LoadPhase phase) {
+		return cpuTimes[phase.ordinal()];
+	}
+
+	/**
+	 * @return wall time (ns) of all phases
+	 */
+	public synchronized long getTotalWallTime() {
+		long total = 0;
+		for (long time : wallTimes)
+			total += time;
+		return total;
+	}
+
+	/**
+	 * @return the assets read, in the order they finished
+	 */
+	public synchronized List<AssetStats> getAssets() {
+		return Collections.unmodifiableList(new ArrayList<AssetStats>(assets));
+	}
+
+	/**
+	 * @return the assets of a phase (PARSE, TEXTURES or INSTANCES)
+	 */
+	public synchronized List<AssetStats> getAssets(LoadPhase phase) {
+		ArrayList<AssetStats> list = new ArrayList<AssetStats>();
+		for (AssetStats asset : assets)
+			if (asset.getPhase() == phase)
+				list.add(asset);
+		return list;
+	}
+
+	public synchronized long getBytesRead() {
+		return bytesRead;
+	}
+
+	/**
+	 * @return assets found already loaded (textures in the TextureManager,
+	 *         meshs in the Object3DManager), nothing was read for them
+	 */
+	public synchronized int getCacheHits() {
+		return cacheHits;
+	}
+
+	/**
+	 * @return one line per timed phase, plus bytes read and cache hits
+	 */
+	@Override
+	public synchronized String toString() {
+		StringBuilder sb = new StringBuilder();
+		for (LoadPhase phase : LoadPhase.values()) {
+			if (wallTimes[phase.ordinal()] == 0)
+				continue;
+			sb.append(phase).append(": ")
+					.append(wallTimes[phase.ordinal()] / 1000000)
+					.append(" ms (cpu ")
+					.append(cpuTimes[phase.ordinal()] / 1000000)
+					.append(" ms)\n");
+		}
+		sb.append(assets.size()).append(" assets read (").append(bytesRead)
+				.append(" bytes), ").append(cacheHits).append(" cache hits");
+		return sb.toString();
+	}
+}
@@ -0,0 +1,133 @@
+package com.andresjesse.jpctblend;
+
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+
+import com.threed.jpct.FrameBuffer;
+import com.threed.jpct.TextureManager;
+
+/**
+ * SceneTextureManager class. Keeps track of the textures JPCTBlend added to
+ * the JPCT TextureManager, counting how many loaded scenes use each one.
+ * Textures added by the user (outside JPCTBlend) are never touched.
+ * 
+ * When no scene references a texture anymore it waits for
+ * {@link #unloadTextures(FrameBuffer)}, which unloads it from the graphics
+ * card and removes it from the TextureManager (a scene loaded before that
+ * just references it again).
+ * 
+ * @author andres
+ * 
+ */
+public class SceneTextureManager {
+
+	// textures owned by JPCTBlend -> number of scenes using them
+	private HashMap<String, Integer> references;
+
+	// owned textures no scene is using
+	private LinkedHashSet<String> unreferenced;
+
+	private static SceneTextureManager instance = null;
+
+	public static synchronized SceneTextureManager getInstance() {
+		if (instance == null)
+			instance = new SceneTextureManager();
+		return instance;
+	}
+
+	private SceneTextureManager() {
+		references = new HashMap<>();
+		unreferenced = new LinkedHashSet<>();
+	}
+
+	/**
+	 * @param name
+	 *            texture name
+	 * @return true if the texture was added to the TextureManager by JPCTBlend
+	 */
+	public synchronized boolean isOwned(String name) {
+		return references.containsKey(name);
+	}
+
+	/**
+	 * Takes ownership of a texture just added to the TextureManager by a
+	 * scene (the scene holds the first reference).
+	 * 
+	 * @param name
+	 *            texture name
+	 */
+	synchronized void registerTexture(String name) {
+		references.put(name, 1);
+	}
+
+	/**
+	 * Adds a reference to an owned texture.
+	 * 
+	 * @param name
+	 *            texture name
+	 * @return false if the texture is not owned by JPCTBlend (nothing is
+	 *         referenced)
+	 */
+	public synchronized boolean retainTexture(String name) {
+		Integer count = references.get(name);
+		if (count == null)
+			return false;
+
+		references.put(name, count + 1);
+		unreferenced.remove(name);
+		return true;
+	}
+
+	/**
+	 * Releases a reference added by {@link #retainTexture(String)} (or by the
+	 * scene that loaded it).
+	 * 
+	 * @param name
+	 *            texture name
+	 */
+	public synchronized void releaseTexture(String name) {
+		Integer count = references.get(name);
+		if (count == null || count == 0)
+			throw new RuntimeException("Error: SceneTextureManager: " + name
+					+ " released more times than retained!");
+
+		references.put(name, count - 1);
+		if (count == 1)
+			unreferenced.add(name);
+	}
+
+	/**
+	 * Unloads (from the graphics card) and removes (from the TextureManager)
+	 * every owned texture that no scene is using. Call it from the rendering
+	 * thread.
+	 * 
+	 * @param fb
+	 *            FrameBuffer used to render the textures. If null, textures are
+	 *            just removed from the TextureManager.
+	 */
+	public synchronized void unloadTextures(FrameBuffer fb) {
+		for (String name : unreferenced) {
+			if (fb != null)
+				TextureManager.getInstance().removeAndUnload(name, fb);
+			else
+				TextureManager.getInstance().removeTexture(name);
+
+			references.remove(name);
+		}
+		unreferenced.clear();
+	}
+
+	/**
+	 * @return number of textures owned by JPCTBlend
+	 */
+	public synchronized int size() {
+		return references.size();
+	}
+
+	/**
+	 * @return number of owned textures waiting to be unloaded
+	 */
+	public synchronized int getUnreferencedCount() {
+		return unreferenced.size();
+	}
+}
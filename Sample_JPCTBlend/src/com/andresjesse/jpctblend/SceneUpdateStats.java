@@ -0,0 +1,199 @@
+package com.andresjesse.jpctblend;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Scene Update Stats, histograms of the scene updates: total
+ * {@link JPCTBlendScene#update(float)} time (each call to frame() or
+ * simulate() is an update too), pivot fix-up time, and act() time of each
+ * actor class (summed over the actors of the class that acted in the
+ * update, one sample per update). Recording never allocates (except
+ * when an actor class is seen for the first time). Read them through
+ * {@link #snapshot()}, from any thread. See
+ * {@link SceneLoadOptions#setUpdateStats(boolean)}.
+ *
+ * @author andres
+ *
+ */
+public class SceneUpdateStats {
+
+	/**
+	 * Copy of the histograms, taken by {@link SceneUpdateStats#snapshot()}.
+	 */
+	public static class Snapshot {
+		private final TimeHistogram update;
+		private final TimeHistogram pivotFixup;
+		private final Map<Class<?>, TimeHistogram> actors;
+
+		Snapshot(TimeHistogram update, TimeHistogram pivotFixup,
+				Map<Class<?>, TimeHistogram> actors) {
+			this.update = update;
+			this.pivotFixup = pivotFixup;
+			this.actors = actors;
+		}
+
+		/**
+		 * @return total update() time
+		 */
+		public TimeHistogram getUpdate() {
+			return update;
+		}
+
+		/**
+		 * @return pivot fix-up time (see JPCTBlendScene.fixPivots())
+		 */
+		public TimeHistogram getPivotFixup() {
+			return pivotFixup;
+		}
+
+		/**
+		 * @return act() time per update of each actor class, the most
+		 *         expensive (total time) first
+		 */
+		public Map<Class<?>, TimeHistogram> getActors() {
+			return actors;
+		}
+
+		/**
+		 * @return one line per histogram (p50/p99/max)
+		 */
+		@Override
+		public String toString() {
+			StringBuilder sb = new StringBuilder();
+			sb.append("update: ").append(update).append('\n');
+			sb.append("pivot fix-up: ").append(pivotFixup);
+			for (Map.Entry<Class<?>, TimeHistogram> entry : actors.entrySet())
+				sb.append('\n').append(entry.getKey().getSimpleName())
+						.append(".act: ").append(entry.getValue());
+			return sb.toString();
+		}
+	}
+
+	private final TimeHistogram update = new TimeHistogram();
+	private final TimeHistogram pivotFixup = new TimeHistogram();
+
+	// actor classes, their histograms and act time in the current update
+	private final HashMap<Class<?>, Integer> classIndexes = new HashMap<Class<?>, Integer>();
+	private final ArrayList<Class<?>> classes = new ArrayList<Class<?>>();
+	private final ArrayList<TimeHistogram> classHistograms = new ArrayList<TimeHistogram>();
+	private long[] classTimes = new long[0];
+	private boolean[] classActed = new boolean[0];
+
+	// actor (by scene index) whose class index is in actorClasses
+	private IActor[] mappedActors = new IActor[0];
+	private int[] actorClasses = new int[0];
+
+	SceneUpdateStats() {
+	}
+
+	/**
+	 * Records an update. Call it from the rendering thread.
+	 *
+	 * @param updateTime
+	 *            update time (ns)
+	 * @param pivotTime
+	 *            pivot fix-up time (ns, negative if pivots were not fixed)
+	 * @param actors
+	 *            scene actors
+	 * @param actTimes
+	 *            act time (ns) of each actor, by scene index
+	 * @param due
+	 *            indexes of the actors that acted
+	 * @param count
+	 *            number of indexes in due
+	 */
+	synchronized void record(long updateTime, long pivotTime,
+			List<IActor> actors, long[] actTimes, int[] due, int count) {
+		update.record(updateTime);
+		if (pivotTime >= 0)
+			pivotFixup.record(pivotTime);
+
+		if (mappedActors.length != actors.size()) {
+			mappedActors = new IActor[actors.size()];
+			actorClasses = new int[actors.size()];
+		}
+
+		for (int k = 0; k < count; k++) {
+			int i = due[k];
+			IActor actor = actors.get(i);
+
+			// actors may be replaced (e.g. pooled actors on re-add)
+			if (mappedActors[i] != actor) {
+				mappedActors[i] = actor;
+				actorClasses[i] = classIndex(actor.getClass());
+			}
+
+			classTimes[actorClasses[i]] += actTimes[i];
+			classActed[actorClasses[i]] = true;
+		}
+
+		for (int c = 0; c < classTimes.length; c++) {
+			if (classActed[c]) {
+				classHistograms.get(c).record(classTimes[c]);
+				classTimes[c] = 0;
+				classActed[c] = false;
+			}
+		}
+	}
+
+	private int classIndex(Class<?> cls) {
+		Integer index = classIndexes.get(cls);
+		if (index != null)
+			return index;
+
+		index = classes.size();
+		classIndexes.put(cls, index);
+		classes.add(cls);
+		classHistograms.add(new TimeHistogram());
+
+		long[] times = new long[classes.size()];
+		System.arraycopy(classTimes, 0, times, 0, classTimes.length);
+		classTimes = times;
+
+		boolean[] acted = new boolean[classes.size()];
+		System.arraycopy(classActed, 0, acted, 0, classActed.length);
+		classActed = acted;
+
+		return index;
+	}
+
+	/**
+	 * @return a copy of the histograms
+	 */
+	public synchronized Snapshot snapshot() {
+		ArrayList<Integer> order = new ArrayList<Integer>();
+		for (int c = 0; c < classes.size(); c++)
+			order.add(c);
+
+		Collections.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer a, Integer b) {
+				return Long.compare(classHistograms.get(b).getTotal(),
+						classHistograms.get(a).getTotal());
+			}
+		});
+
+		LinkedHashMap<Class<?>, TimeHistogram> actors = new LinkedHashMap<Class<?>, TimeHistogram>();
+		for (int c : order)
+			actors.put(classes.get(c), new TimeHistogram(classHistograms.get(c)));
+
+		return new Snapshot(new TimeHistogram(update), new TimeHistogram(
+				pivotFixup), Collections.unmodifiableMap(actors));
+	}
+
+	/**
+	 * Clears all histograms (e.g. to measure from now on).
+	 */
+	public synchronized void reset() {
+		update.reset();
+		pivotFixup.reset();
+		for (TimeHistogram histogram : classHistograms)
+			histogram.reset();
+	}
+}
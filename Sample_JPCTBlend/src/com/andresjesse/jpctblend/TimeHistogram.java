@@ -0,0 +1,149 @@
+package com.andresjesse.jpctblend;
+
+/**
+ * Time Histogram, counts times (ns) in log-linear buckets: each power of two
+ * is split into 16 buckets, so percentiles are within about 6% of the real
+ * value, whatever the range (from ns to minutes). Recording a time never
+ * allocates. Not thread safe (see {@link SceneUpdateStats}).
+ *
+ * @author andres
+ *
+ */
+public class TimeHistogram {
+
+	// sub buckets per power of two = 2^SUB_BITS
+	private static final int SUB_BITS = 4;
+	private static final int SUB_COUNT = 1 << SUB_BITS;
+
+	// enough buckets for any positive long
+	private static final int BUCKETS = (63 - SUB_BITS + 1) * SUB_COUNT;
+
+	private final long[] counts = new long[BUCKETS];
+	private long count = 0;
+	private long total = 0;
+	private long max = 0;
+
+	public TimeHistogram() {
+	}
+
+	/**
+	 * @param other
+	 *            histogram to copy
+	 */
+	public TimeHistogram(TimeHistogram other) {
+		System.arraycopy(other.counts, 0, counts, 0, BUCKETS);
+		count = other.count;
+		total = other.total;
+		max = other.max;
+	}
+
+	/**
+	 * @param time
+	 *            time (ns), negative times count as 0
+	 */
+	public void record(long time) {
+		if (time < 0)
+			time = 0;
+
+		counts[bucket(time)]++;
+		count++;
+		total += time;
+		if (time > max)
+			max = time;
+	}
+
+	private static int bucket(long time) {
+		if (time < SUB_COUNT)
+			return (int) time;
+
+		int exponent = 63 - Long.numberOfLeadingZeros(time);
+		int shift = exponent - SUB_BITS;
+		return (shift + 1) * SUB_COUNT
+				+ (int) ((time >>> shift) & (SUB_COUNT - 1));
+	}
+
+	/**
+	 * @return the highest time counted in a bucket
+	 */
+	private static long bucketTop(int bucket) {
+		if (bucket < SUB_COUNT)
+			return bucket;
+
+		int shift = bucket / SUB_COUNT - 1;
+		long bottom = (long) (SUB_COUNT | (bucket % SUB_COUNT)) << shift;
+		return bottom + (1L << shift) - 1;
+	}
+
+	/**
+	 * @param percentile
+	 *            0 to 100 (e.g. 50 for the median, 99 for p99)
+	 * @return the time (ns) not exceeded by that percentage of the recorded
+	 *         times (rounded up to the bucket, never above the max), 0 if
+	 *         nothing was recorded
+	 */
+	public long getValueAtPercentile(double percentile) {
+		if (count == 0)
+			return 0;
+
+		long rank = (long) Math.ceil(percentile / 100 * count);
+		rank = Math.max(1, Math.min(count, rank));
+
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += counts[i];
+			if (seen >= rank)
+				return Math.min(bucketTop(i), max);
+		}
+		return max;
+	}
+
+	/**
+	 * @return number of recorded times
+	 */
+	public long getCount() {
+		return count;
+	}
+
+	/**
+	 * @return sum of the recorded times (ns)
+	 */
+	public long getTotal() {
+		return total;
+	}
+
+	/**
+	 * @return highest recorded time (ns)
+	 */
+	public long getMax() {
+		return max;
+	}
+
+	/**
+	 * @return average time (ns), 0 if nothing was recorded
+	 */
+	public long getMean() {
+		return count == 0 ? 0 : total / count;
+	}
+
+	public void reset() {
+		for (int i = 0; i < BUCKETS; i++)
+			counts[i] = 0;
+		count = 0;
+		total = 0;
+		max = 0;
+	}
+
+	/**
+	 * @return count, p50, p99 and max (in ms)
+	 */
+	@Override
+	public String toString() {
+		return count + " samples, p50 " + ms(getValueAtPercentile(50))
+				+ " ms, p99 " + ms(getValueAtPercentile(99)) + " ms, max "
+				+ ms(max) + " ms";
+	}
+
+	private static String ms(long time) {
+		return String.valueOf(Math.round(time / 1000.0) / 1000.0);
+	}
+}
@@ -1,7 +1,9 @@
 package com.andresjesse.jpctblend.actors;
 
-import com.andresjesse.jpctblend.IActor;
-import com.threed.jpct.Loader;
+import com.andresjesse.jpctblend.ActorCommandBuffer;
+import com.andresjesse.jpctblend.ActorResources;
+import com.andresjesse.jpctblend.IParallelActor;
+import com.andresjesse.jpctblend.IPoolableActor;
 import com.threed.jpct.Object3D;
 import com.threed.jpct.SimpleVector;
 import com.threed.jpct.World;
@@ -17,7 +19,10 @@ import com.threed.jpct.World;
  * @author andres
  * 
  */
-public class SampleActor implements IActor {
+public class SampleActor implements IParallelActor, IPoolableActor {
+
+	// mesh file, loaded once for all actors (see SampleActorProvider)
+	public static final String MESH = "media/actors/SampleActor.3ds";
 
 	// create Actor fields here
 	private Object3D obj;
@@ -25,9 +30,14 @@ public class SampleActor implements IActor {
 
 	/**
 	 * Constructor: Here you can define your Actor mesh, texture, props, etc.
+	 * Take them from the resources, so they are loaded once and shared by
+	 * all actors.
+	 * 
+	 * @param resources
+	 *            shared actor resources
 	 */
-	public SampleActor() {
-		obj = Loader.load3DS("media/actors/SampleActor.3ds", 1.0f)[0];
+	public SampleActor(ActorResources resources) {
+		obj = resources.getMesh(MESH);
 	}
 
 	/**
@@ -89,4 +99,33 @@ public class SampleActor implements IActor {
 	public void act() {
 		obj.rotateY(0.01f);
 	}
+
+	/**
+	 * Same behavior, for parallel updates: the rotation is recorded and
+	 * applied later by the rendering thread. The speed does not depend on
+	 * the frame rate (0.6 radians per second, 0.01 per frame at 60 fps).
+	 */
+	@Override
+	public void act(ActorCommandBuffer commands, float dt) {
+		commands.rotateY(obj, 0.6f * dt);
+	}
+
+	/**
+	 * Called when the actor goes back to the pool (see ActorPool): the mesh
+	 * is kept, just forget the last scene.
+	 */
+	@Override
+	public void reset() {
+		world = null;
+		obj.clearTranslation();
+		obj.clearRotation();
+	}
+
+	/**
+	 * Called when the actor is taken from the pool, position and rotation are
+	 * set by JPCTBlend right after.
+	 */
+	@Override
+	public void reinitialize() {
+	}
 }
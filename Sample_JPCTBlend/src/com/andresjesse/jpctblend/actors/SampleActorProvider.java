@@ -0,0 +1,33 @@
+package com.andresjesse.jpctblend.actors;
+
+import com.andresjesse.jpctblend.ActorBuilder;
+import com.andresjesse.jpctblend.ActorFactory;
+import com.andresjesse.jpctblend.ActorResources;
+import com.andresjesse.jpctblend.IActor;
+import com.andresjesse.jpctblend.IActorProvider;
+
+/**
+ * Sample Actor Provider, registers the builders of the sample actors, so they
+ * are created without reflection. It is listed in
+ * "META-INF/services/com.andresjesse.jpctblend.IActorProvider".
+ * 
+ * @author andres
+ * 
+ */
+public class SampleActorProvider implements IActorProvider {
+
+	@Override
+	public void registerActors(ActorFactory factory) {
+		factory.register("SampleActor", new ActorBuilder() {
+			@Override
+			public void prefetch(ActorResources resources) {
+				resources.prefetchMesh(SampleActor.MESH);
+			}
+
+			@Override
+			public IActor create(ActorResources resources) {
+				return new SampleActor(resources);
+			}
+		});
+	}
+}
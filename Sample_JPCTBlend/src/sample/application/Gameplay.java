@@ -1,6 +1,13 @@
 package sample.application;
 
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import com.andresjesse.jpctblend.GameLoop;
+import com.andresjesse.jpctblend.ISceneLoadListener;
 import com.andresjesse.jpctblend.JPCTBlendScene;
+import com.andresjesse.jpctblend.LoadPhase;
+import com.andresjesse.jpctblend.SceneLoadOptions;
 import com.threed.jpct.FrameBuffer;
 import com.threed.jpct.IRenderer;
 import com.threed.jpct.World;
@@ -19,6 +26,9 @@ public class Gameplay {
 
 	private JPCTBlendScene scn;
 
+	// loading progress, written by the scene loader thread
+	private volatile String loadProgress = "";
+
 	/**
 	 * Constructor, just splits the engine lifetime in a few methods.
 	 */
@@ -37,32 +47,70 @@ public class Gameplay {
 		fb.disableRenderer(IRenderer.RENDERER_SOFTWARE);
 		fb.enableRenderer(IRenderer.RENDERER_OPENGL);
 
+		// render at the display rate, the simulation has its own (GameLoop)
+		org.lwjgl.opengl.Display.setVSyncEnabled(true);
+
 		world = new World();
 	}
 
 	/**
 	 * Method used to setup the objects, in this case just loads the scene
-	 * exported from blender.
+	 * exported from blender. The scene is loaded in background, while the
+	 * window keeps refreshing (and showing the loading progress).
 	 */
 	private void setupObjects() {
-		scn = new JPCTBlendScene("media/scenes/sample_scene/sample_scene.xml", world);
-		
+		SceneLoadOptions options = new SceneLoadOptions();
+		options.setLoadListener(new ISceneLoadListener() {
+			@Override
+			public void onProgress(LoadPhase phase, int done, int total) {
+				loadProgress = phase + " " + done + "/" + total;
+			}
+		});
+
+		Future<JPCTBlendScene> loading = JPCTBlendScene.loadAsync(
+				"media/scenes/sample_scene/sample_scene.xml", world, options);
+
+		String title = org.lwjgl.opengl.Display.getTitle();
+
+		while (!loading.isDone()) {
+			org.lwjgl.opengl.Display.setTitle("Loading... " + loadProgress);
+
+			fb.clear(java.awt.Color.BLACK);
+			fb.update();
+			fb.displayGLOnly();
+
+			try {
+				Thread.sleep(17);
+			} catch (InterruptedException e) {
+				e.printStackTrace();
+			}
+		}
+		org.lwjgl.opengl.Display.setTitle(title);
+
+		try {
+			scn = loading.get();
+		} catch (InterruptedException | ExecutionException e) {
+			throw new RuntimeException("JPCTBlend error: can't load scene!", e);
+		}
+
+		// textures and lights are added here, in the rendering thread
+		scn.addSceneToWorld();
+
 		world.buildAllObjects();
 	}
 
 	/**
-	 * JPCT LWJGL main loop.
+	 * JPCT LWJGL main loop. The scene is simulated at a fixed 30 Hz, and
+	 * rendered as fast as possible.
 	 */
 	private void run() {
-		//fps control
-		long startTime = 0, elapsedTime = 0;
+		// simulation: 30 steps per second, at most 5 steps per frame
+		GameLoop loop = new GameLoop(1 / 30f, 5);
 
 		while (!org.lwjgl.opengl.Display.isCloseRequested()) {
 
-			startTime = System.currentTimeMillis();//fps control
-
-			//Update JPCTBlend Scene
-			scn.update();
+			//Update JPCTBlend Scene (frame work, then once per simulation step)
+			loop.update(scn);
 
 			fb.clear(java.awt.Color.BLACK);
 
@@ -71,18 +119,6 @@ public class Gameplay {
 
 			fb.update();
 			fb.displayGLOnly();
-			
-			//fps control
-			elapsedTime = System.currentTimeMillis() - startTime;
-
-			if (elapsedTime < 17) {
-				try {
-					Thread.sleep(17 - elapsedTime);
-				} catch (InterruptedException e) {
-					e.printStackTrace();
-				}
-			}
-			//end of fps control
 		}
 	}
 
@@ -90,7 +126,7 @@ public class Gameplay {
 	 * Dispose fb and scene.
 	 */
 	private void clean() {
-		scn.removeSceneFromWorld();
+		scn.removeSceneFromWorld(fb);
 
 		fb.disableRenderer(IRenderer.RENDERER_OPENGL);
 		fb.dispose();